@@ -0,0 +1,401 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import de.kasoki.jfeedly.model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous API handler for the Feedly API. Every call runs on a shared executor and returns a
+ * CompletableFuture, the requests go through the same model classes and transport as the wrapped JFeedly handler.
+ * On Java 21+ the shared executor uses virtual threads, on older versions a bounded pool of daemon threads whose
+ * queue runs requests on the calling thread once it is full.
+ * @author Christopher Kaster
+ */
+public class AsyncJFeedly {
+
+    /** number of threads of the shared executor on Java < 21, twice the connections the default pool opens */
+    public static final int SHARED_EXECUTOR_THREADS = 16;
+    /** number of requests the shared executor queues on Java < 21 before they run on the calling thread */
+    public static final int SHARED_EXECUTOR_QUEUE_SIZE = 1024;
+
+    private static ExecutorService sharedExecutor;
+
+    private JFeedly handler;
+    private ExecutorService executor;
+
+    private AsyncJFeedly(JFeedly handler, ExecutorService executor) {
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    /** Returns the wrapped (blocking) handler */
+    public JFeedly getHandler() {
+        return this.handler;
+    }
+
+    /** Returns a user profile */
+    public CompletableFuture<Profile> getProfile() {
+        return this.supply(new Supplier<Profile>() {
+            @Override
+            public Profile get() {
+                return handler.getProfile();
+            }
+        });
+    }
+
+    /** Returns all categories */
+    public CompletableFuture<Categories> getCategories() {
+        return this.supply(new Supplier<Categories>() {
+            @Override
+            public Categories get() {
+                return handler.getCategories();
+            }
+        });
+    }
+
+    /** Returns all subscriptions */
+    public CompletableFuture<Subscriptions> getSubscriptions() {
+        return this.supply(new Supplier<Subscriptions>() {
+            @Override
+            public Subscriptions get() {
+                return handler.getSubscriptions();
+            }
+        });
+    }
+
+    /** Return all tags */
+    public CompletableFuture<Tags> getTags() {
+        return this.supply(new Supplier<Tags>() {
+            @Override
+            public Tags get() {
+                return handler.getTags();
+            }
+        });
+    }
+
+    /** Subscribe to a feed (see JFeedly.subscribe) */
+    public CompletableFuture<Void> subscribe(final String feedUrl, final String title,
+                                             final List<Category> categories) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.subscribe(feedUrl, title, categories);
+            }
+        });
+    }
+
+    /** Save changes on a subscription to the feedly server */
+    public CompletableFuture<Void> updateSubscription(final Subscription subscription,
+                                                      final ArrayList<Category> categories) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.updateSubscription(subscription, categories);
+            }
+        });
+    }
+
+    /** Remove a given subscription */
+    public CompletableFuture<Void> deleteSubscription(final Subscription subscription) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.deleteSubscription(subscription);
+            }
+        });
+    }
+
+    /** Search feeds by a specified search query (see JFeedly.searchFeeds) */
+    public CompletableFuture<ArrayList<Feed>> searchFeeds(final String query, final int numberOfFeeds) {
+        return this.supply(new Supplier<ArrayList<Feed>>() {
+            @Override
+            public ArrayList<Feed> get() {
+                return handler.searchFeeds(query, numberOfFeeds);
+            }
+        });
+    }
+
+    /** Returns ALL entries with a specified maximum */
+    public CompletableFuture<Entries> getEntries(final int number) {
+        return this.supply(new Supplier<Entries>() {
+            @Override
+            public Entries get() {
+                return handler.getEntries(number);
+            }
+        });
+    }
+
+    /** Returns all articles for a specified Category (max. 10'000) */
+    public CompletableFuture<Entries> getEntriesFor(Category category) {
+        return this.getEntriesFor(category.getCategoryId(), true, true, 10000);
+    }
+
+    /** Returns all articles for a specified Feed (max. 10'000) */
+    public CompletableFuture<Entries> getEntriesFor(Feed feed) {
+        return this.getEntriesFor(feed.getId(), true, true, 10000);
+    }
+
+    /** Returns all articles for a specified Subscription (max. 10'000) */
+    public CompletableFuture<Entries> getEntriesFor(Subscription subscription) {
+        return this.getEntriesFor(subscription.getId(), true, true, 10000);
+    }
+
+    /**
+     * Returns articles
+     * @param id All articles grouped by one ID. May be a subscription, feed, tag or category id
+     * @param unreadOnly List only the unread entries
+     * @param showNewest Newest first?
+     * @param number Maximum number of entries
+     * @return A future which completes with a bunch of articles
+     */
+    public CompletableFuture<Entries> getEntriesFor(final String id, final boolean unreadOnly,
+                                                    final boolean showNewest, final int number) {
+        return this.supply(new Supplier<Entries>() {
+            @Override
+            public Entries get() {
+                return handler.getEntriesFor(id, unreadOnly, showNewest, number);
+            }
+        });
+    }
+
+    /** Get a Feed specified by an ID */
+    public CompletableFuture<Feed> getFeedById(final String feedId) {
+        return this.supply(new Supplier<Feed>() {
+            @Override
+            public Feed get() {
+                return handler.getFeedById(feedId);
+            }
+        });
+    }
+
+    /** Get the Feeds specified by their IDs (see JFeedly.getFeedsByIds) */
+    public CompletableFuture<ArrayList<Feed>> getFeedsByIds(final Collection<String> feedIds) {
+        return this.supply(new Supplier<ArrayList<Feed>>() {
+            @Override
+            public ArrayList<Feed> get() {
+                return handler.getFeedsByIds(feedIds);
+            }
+        });
+    }
+
+    /** Returns the number of unread articles for a category */
+    public CompletableFuture<Integer> getCountOfUnreadArticles(Category category) {
+        return this.getCountOfUnreadArticles(category.getCategoryId());
+    }
+
+    /** Returns the number of unread articles for a subscription */
+    public CompletableFuture<Integer> getCountOfUnreadArticles(Subscription subscription) {
+        return this.getCountOfUnreadArticles(subscription.getId());
+    }
+
+    private CompletableFuture<Integer> getCountOfUnreadArticles(final String id) {
+        return this.supply(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                return handler.getCountOfUnreadArticles(id);
+            }
+        });
+    }
+
+    /** Returns the unread counts of all feeds, categories and tags */
+    public CompletableFuture<UnreadCounts> getUnreadCounts() {
+        return this.supply(new Supplier<UnreadCounts>() {
+            @Override
+            public UnreadCounts get() {
+                return handler.getUnreadCounts();
+            }
+        });
+    }
+
+    /** Mark everything as read */
+    public CompletableFuture<Void> markEverythingAsRead() {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.markEverythingAsRead();
+            }
+        });
+    }
+
+    /** Mark an article as read */
+    public CompletableFuture<Void> markAsRead(final Entry entry) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.markAsRead(entry);
+            }
+        });
+    }
+
+    /** Mark many articles as read, completes with true if all markers were sent */
+    public CompletableFuture<Boolean> markAsRead(final Collection<Entry> entries) {
+        return this.supply(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return handler.markAsRead(entries);
+            }
+        });
+    }
+
+    /** Mark many articles as unread, completes with true if all markers were sent */
+    public CompletableFuture<Boolean> markAsUnread(final Collection<Entry> entries) {
+        return this.supply(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return handler.markAsUnread(entries);
+            }
+        });
+    }
+
+    /** Send all queued entry markers, completes with true if all markers were sent */
+    public CompletableFuture<Boolean> flushMarkers() {
+        return this.supply(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return handler.flushMarkers();
+            }
+        });
+    }
+
+    /** Mark a subscription as read */
+    public CompletableFuture<Void> markAsRead(final Subscription subscription) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.markAsRead(subscription);
+            }
+        });
+    }
+
+    /** Mark a feed as read */
+    public CompletableFuture<Void> markAsRead(final Feed feed) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.markAsRead(feed);
+            }
+        });
+    }
+
+    /** Mark a category as read */
+    public CompletableFuture<Void> markAsRead(final Category category) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.markAsRead(category);
+            }
+        });
+    }
+
+    /** Export the users subscriptions as OPML */
+    public CompletableFuture<String> exportOPML() {
+        return this.supply(new Supplier<String>() {
+            @Override
+            public String get() {
+                return handler.exportOPML();
+            }
+        });
+    }
+
+    /** Add subscriptions to the users account based on this OPML string */
+    public CompletableFuture<Void> importOPML(final String opmlString) {
+        return this.run(new Runnable() {
+            @Override
+            public void run() {
+                handler.importOPML(opmlString);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    private CompletableFuture<Void> run(Runnable runnable) {
+        return CompletableFuture.runAsync(runnable, executor);
+    }
+
+    /**
+     * Create an asynchronous handler which runs on the shared executor
+     * @param handler An (authenticated) jfeedly handler, may also be a JFeedlyCached
+     * @return An asynchronous jfeedly api handler
+     */
+    public static AsyncJFeedly fromHandler(JFeedly handler) {
+        return new AsyncJFeedly(handler, AsyncJFeedly.getSharedExecutor());
+    }
+
+    /**
+     * Create an asynchronous handler which runs on the given executor
+     * @param handler An (authenticated) jfeedly handler, may also be a JFeedlyCached
+     * @param executor The executor which will run the requests
+     * @return An asynchronous jfeedly api handler
+     */
+    public static AsyncJFeedly fromHandler(JFeedly handler, ExecutorService executor) {
+        return new AsyncJFeedly(handler, executor);
+    }
+
+    /** Returns the executor which is shared by all asynchronous handlers */
+    public static synchronized ExecutorService getSharedExecutor() {
+        if(sharedExecutor == null) {
+            sharedExecutor = AsyncJFeedly.createVirtualThreadExecutor();
+        }
+
+        if(sharedExecutor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(SHARED_EXECUTOR_THREADS, SHARED_EXECUTOR_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(SHARED_EXECUTOR_QUEUE_SIZE),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "jfeedly-async-" + threadNumber.getAndIncrement());
+                            thread.setDaemon(true);
+
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+            // idle threads stop after a minute, like the threads of a cached thread pool
+            executor.allowCoreThreadTimeOut(true);
+
+            sharedExecutor = executor;
+        }
+
+        return sharedExecutor;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        // virtual threads are only available on Java 21+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(Exception ex) {
+            return null;
+        }
+    }
+}
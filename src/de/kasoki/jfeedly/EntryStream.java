@@ -0,0 +1,181 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import de.kasoki.jfeedly.model.Entries;
+import de.kasoki.jfeedly.model.Entry;
+import de.kasoki.jfeedly.model.EntryIds;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A lazy view on all entries of a stream. The entries are loaded page by page following the continuation
+ * tokens of feedly, while the caller reads one page the next page is already loaded in the background.
+ * @author Christopher Kaster
+ */
+public class EntryStream implements Iterable<Entry> {
+
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private JFeedly handler;
+    private String streamId;
+    private boolean unreadOnly;
+    private boolean showNewest;
+    private int pageSize;
+    private boolean prefetch = true;
+    private ExecutorService executor;
+
+    EntryStream(JFeedly handler, String streamId, boolean unreadOnly, boolean showNewest, int pageSize) {
+        if(pageSize < 1) {
+            throw new IllegalArgumentException("pageSize has to be at least 1");
+        }
+
+        this.handler = handler;
+        this.streamId = streamId;
+        this.unreadOnly = unreadOnly;
+        this.showNewest = showNewest;
+        this.pageSize = pageSize;
+        this.executor = AsyncJFeedly.getSharedExecutor();
+    }
+
+    /** Load the next page while the current one is read (Default: true) */
+    public EntryStream setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /** Set the executor which loads the pages in the background (Default: the shared executor of AsyncJFeedly) */
+    public EntryStream setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /** Returns the number of entries which are loaded with one request */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        return new PageIterator();
+    }
+
+    /** Returns a sequential java.util.stream.Stream of all entries */
+    public Stream<Entry> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    private static class Page {
+        private Entries entries;
+        private String continuation;
+
+        Page(Entries entries, String continuation) {
+            this.entries = entries;
+            this.continuation = continuation;
+        }
+    }
+
+    private Page loadPage(String continuation) {
+        EntryIds ids = handler.getEntryIds(streamId, unreadOnly, showNewest, pageSize, continuation);
+
+        return new Page(handler.getEntriesByIds(ids.getIds()), ids.getContinuation());
+    }
+
+    private class PageIterator implements Iterator<Entry> {
+        private Iterator<Entry> current = null;
+        private Future<Page> nextPage = null;
+        private String nextContinuation = null;
+        private boolean finished = false;
+
+        @Override
+        public boolean hasNext() {
+            while(current == null || !current.hasNext()) {
+                if(finished) {
+                    return false;
+                }
+
+                Page page = this.takeNextPage();
+
+                current = page.entries.iterator();
+
+                if(page.continuation == null || page.entries.getNumberOfEntries() == 0) {
+                    finished = true;
+                } else {
+                    nextContinuation = page.continuation;
+
+                    if(prefetch) {
+                        nextPage = this.submit(nextContinuation);
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Entry next() {
+            if(!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private Page takeNextPage() {
+            if(nextPage == null) {
+                return EntryStream.this.loadPage(nextContinuation);
+            }
+
+            try {
+                return nextPage.get();
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("jfeedly: interrupted while loading the next page of " + streamId, ex);
+            } catch(ExecutionException ex) {
+                Throwable cause = ex.getCause();
+
+                if(cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+
+                throw new RuntimeException(cause);
+            } finally {
+                nextPage = null;
+            }
+        }
+
+        private Future<Page> submit(final String continuation) {
+            return executor.submit(new Callable<Page>() {
+                @Override
+                public Page call() {
+                    return EntryStream.this.loadPage(continuation);
+                }
+            });
+        }
+    }
+}
@@ -17,14 +17,34 @@ package de.kasoki.jfeedly;
 
 import de.kasoki.jfeedly.components.BrowserFrame;
 import de.kasoki.jfeedly.components.OnAuthenticatedListener;
+import de.kasoki.jfeedly.helper.ConditionalResponse;
 import de.kasoki.jfeedly.helper.HTTPConnections;
+import de.kasoki.jfeedly.helper.HTTPTransport;
+import de.kasoki.jfeedly.helper.PoolStatistics;
+import de.kasoki.jfeedly.helper.PooledTransport;
+import de.kasoki.jfeedly.helper.TransferStatistics;
 import de.kasoki.jfeedly.model.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * API handler for the Feedly API.
@@ -49,6 +69,18 @@ public class JFeedly {
     private static final int PATCH_VERSION = 19;
     private String configPath = ".";
 
+    private int entriesChunkSize = 250;
+    private int entriesParallelism = 4;
+    private volatile boolean lazyEntries = false;
+    // runs the chunks of getEntriesByIds only, never requests which wait for other tasks
+    private static ExecutorService entriesExecutor;
+    private IdDictionary idDictionary = new IdDictionary();
+
+    private static final int MAX_MARKERS_PER_REQUEST = 1000;
+    private static final int MAX_FEEDS_PER_REQUEST = 1000;
+    private volatile boolean writeBehindMarkers = false;
+    private MarkerQueue markerQueue;
+
     protected JFeedly(String basename, String clientId, String apiSecretKey) {
         this.basename = basename;
         this.clientId = clientId;
@@ -176,12 +208,144 @@ public class JFeedly {
         this.configPath = path;
     }
 
+    /** Returns the path where all files (connection file + cache) will be stored */
+    public String getConfigPath() {
+        return this.configPath;
+    }
+
+    /**
+     * Replace the transport which is used to talk to the feedly servers (Default: PooledTransport)
+     * @param transport the new transport, the old one will be shut down
+     */
+    public void setTransport(HTTPTransport transport) {
+        this.httpHelper.setTransport(transport);
+    }
+
+    /** Returns the transport which is used to talk to the feedly servers */
+    public HTTPTransport getTransport() {
+        return this.httpHelper.getTransport();
+    }
+
+    /**
+     * Configure the connection pool of the default transport
+     * @param maxConnectionsPerHost Maximum number of connections to one host
+     * @param idleTimeout Time in milliseconds after an idle connection will be closed
+     */
+    public void setConnectionPoolLimits(int maxConnectionsPerHost, long idleTimeout) {
+        this.setTransport(new PooledTransport(maxConnectionsPerHost, idleTimeout));
+    }
+
+    /**
+     * Returns the statistics of the connection pool
+     * @return The statistics or null if the transport doesn't use a connection pool
+     */
+    public PoolStatistics getPoolStatistics() {
+        HTTPTransport transport = this.getTransport();
+
+        if(transport instanceof PooledTransport) {
+            return ((PooledTransport) transport).getConnectionPool().getStatistics();
+        }
+
+        return null;
+    }
+
+    /**
+     * Ask the feedly servers for gzip or deflate compressed responses, which are decompressed while they are
+     * being read (Default: true)
+     */
+    public void setCompressionEnabled(boolean compression) {
+        this.httpHelper.setCompression(compression);
+    }
+
+    /** Are the responses requested compressed? */
+    public boolean isCompressionEnabled() {
+        return this.httpHelper.isCompression();
+    }
+
+    /** Returns the number of bytes received from the feedly servers (compressed) and after decompression */
+    public TransferStatistics getTransferStatistics() {
+        return this.httpHelper.getTransferStatistics();
+    }
+
+    /** Returns how often a conditional request was answered with "304 Not Modified" (used by JFeedlyCached) */
+    public long getConditionalHits() {
+        return this.httpHelper.getConditionalHits();
+    }
+
+    /** Returns how often a conditional request had to download the resource again (used by JFeedlyCached) */
+    public long getConditionalMisses() {
+        return this.httpHelper.getConditionalMisses();
+    }
+
+    /**
+     * Send a conditional GET request, see HTTPConnections.sendConditionalGetRequestToFeedly
+     * @param apiUrl the API url, usually starts with "/v3/...."
+     * @param sendValidators Set to false if the previous response isn't available anymore
+     */
+    protected ConditionalResponse sendConditionalGetRequest(String apiUrl, boolean sendValidators) {
+        return this.httpHelper.sendConditionalGetRequestToFeedly(apiUrl, sendValidators);
+    }
+
+    /** Send a GET request and parse the response without copying it into a String first */
+    private JSONObject getJSONObject(String apiUrl) {
+        Reader response = this.openGetRequest(apiUrl);
+
+        try {
+            return new JSONObject(new JSONTokener(response));
+        } finally {
+            closeQuietly(response);
+        }
+    }
+
+    /** Send a GET request and parse the response without copying it into a String first */
+    private JSONArray getJSONArray(String apiUrl) {
+        Reader response = this.openGetRequest(apiUrl);
+
+        try {
+            return new JSONArray(new JSONTokener(response));
+        } finally {
+            closeQuietly(response);
+        }
+    }
+
+    private Reader openGetRequest(String apiUrl) {
+        Reader response = httpHelper.openGetRequestToFeedly(apiUrl);
+
+        if(response == null) {
+            throw new RuntimeException("jfeedly: GET request to " + apiUrl + " failed");
+        }
+
+        return response;
+    }
+
+    private static void closeQuietly(Reader reader) {
+        try {
+            reader.close();
+        } catch(IOException ex) {
+            // do nothing
+        }
+    }
+
+    /** Send all queued markers and close all connections to the feedly servers */
+    public void shutdown() {
+        MarkerQueue queue;
+
+        synchronized(this) {
+            queue = markerQueue;
+            markerQueue = null;
+        }
+
+        if(queue != null) {
+            queue.close();
+        }
+
+        this.getTransport().shutdown();
+    }
+
     /** Returns a user profile */
     public Profile getProfile() {
         if(this.connection != null) {
-            String response = httpHelper.sendGetRequestToFeedly("/v3/profile/");
-
-            JSONObject object = new JSONObject(response);
+            JSONObject object = this.getJSONObject("/v3/profile/");
 
             return Profile.fromJSONObject(object);
         } else {
@@ -194,11 +358,9 @@ public class JFeedly {
     /** Returns all categories */
     public Categories getCategories() {
         if(this.connection != null) {
-            String response = httpHelper.sendGetRequestToFeedly("/v3/categories/");
-
-            JSONArray array = new JSONArray(response);
+            JSONArray array = this.getJSONArray("/v3/categories/");
 
-            return Categories.fromJSONArray(array);
+            return Categories.fromJSONArray(array, this.idDictionary);
         } else {
             System.err.println("JFeedly: Connection required to do this...\n\nCall jfeedlyInstance.authenticate();");
         }
@@ -209,11 +371,9 @@ public class JFeedly {
     /** Returns all subscriptions */
     public Subscriptions getSubscriptions() {
         if(this.connection != null) {
-            String response = httpHelper.sendGetRequestToFeedly("/v3/subscriptions/");
+            JSONArray array = this.getJSONArray("/v3/subscriptions/");
 
-            JSONArray array = new JSONArray(response);
-
-            return Subscriptions.fromJSONArray(array);
+            return Subscriptions.fromJSONArray(array, this.idDictionary);
         } else {
             System.err.println("JFeedly: Connection required to do this...\n\nCall jfeedlyInstance.authenticate();");
         }
@@ -224,9 +384,7 @@ public class JFeedly {
     /** Return all tags */
     public Tags getTags() {
         if(this.connection != null) {
-            String response = httpHelper.sendGetRequestToFeedly("/v3/tags/");
-
-            JSONArray array = new JSONArray(response);
+            JSONArray array = this.getJSONArray("/v3/tags/");
 
             return Tags.fromJSONArray(array);
         } else {
@@ -236,6 +394,27 @@ public class JFeedly {
         return null;
     }
 
+    /** Returns an immutable snapshot of all categories, which can be shared by many threads (see Categories) */
+    public Categories getCategoriesSnapshot() {
+        Categories categories = this.getCategories();
+
+        return categories != null ? categories.snapshot() : null;
+    }
+
+    /** Returns an immutable snapshot of all subscriptions, which can be shared by many threads (see Subscriptions) */
+    public Subscriptions getSubscriptionsSnapshot() {
+        Subscriptions subscriptions = this.getSubscriptions();
+
+        return subscriptions != null ? subscriptions.snapshot() : null;
+    }
+
+    /** Returns an immutable snapshot of all tags, which can be shared by many threads (see Tags) */
+    public Tags getTagsSnapshot() {
+        Tags tags = this.getTags();
+
+        return tags != null ? tags.snapshot() : null;
+    }
+
     /**
      * Subscribe to a feed
      * @param feedUrl The URL of the feed
@@ -324,21 +503,19 @@ public class JFeedly {
      * @return A list of feeds which are somehow affected by your search query.
      */
     public ArrayList<Feed> searchFeeds(String query, int numberOfFeeds) {
-        String response = httpHelper.sendGetRequestToFeedly("/v3/search/feeds/?q=" + query + "&n=" + numberOfFeeds);
-
-        JSONObject searchResult = new JSONObject(response);
+        JSONObject searchResult = this.getJSONObject("/v3/search/feeds/?q=" + query + "&n=" + numberOfFeeds);
 
         JSONArray results = searchResult.getJSONArray("results");
 
-        ArrayList<Feed> feeds = new ArrayList<Feed>();
+        ArrayList<String> feedIds = new ArrayList<String>(results.length());
 
         for(int i = 0; i < results.length(); i++) {
             JSONObject result = results.getJSONObject(i);
 
-            feeds.add(this.getFeedById(result.getString("feedId")));
+            feedIds.add(result.getString("feedId"));
         }
 
-        return feeds;
+        return this.getFeedsByIds(feedIds);
     }
 
     /**
@@ -418,12 +595,272 @@ public class JFeedly {
      * @return A bunch of articles
      */
     public Entries getEntriesFor(String id, boolean unreadOnly, boolean showNewest, int number) {
-        String entryIdResponse = httpHelper.sendGetRequestToFeedly("/v3/streams/ids?streamId=" + id +
-            "&unreadOnly=" + unreadOnly + "&count=" + number + "&ranked=" + (showNewest ? "newest" : "oldest"));
+        EntryIds entryIds = this.getEntryIds(id, unreadOnly, showNewest, number, null);
+
+        return this.getEntriesByIds(entryIds.getIds());
+    }
+
+    /**
+     * Returns one page of entry IDs of a stream
+     * @param id May be a subscription, feed, tag or category id
+     * @param unreadOnly List only the unread entries
+     * @param showNewest Newest first?
+     * @param number Maximum number of IDs on this page
+     * @param continuation The continuation token of the previous page, null for the first page
+     * @return The IDs and the continuation token for the next page
+     */
+    public EntryIds getEntryIds(String id, boolean unreadOnly, boolean showNewest, int number,
+                                String continuation) {
+        return this.requestEntryIds(id, unreadOnly, showNewest, number, continuation, 0);
+    }
 
-        String response = httpHelper.sendPostRequestToFeedly("/v3/entries/.mget", entryIdResponse, true);
+    /**
+     * Returns one page of the IDs of the entries which were added to a stream after the given time, newest first.
+     * These are never cached.
+     * @param id May be a subscription, feed, tag or category id
+     * @param unreadOnly List only the unread entries
+     * @param newerThan Time in milliseconds since the epoch
+     * @param number Maximum number of IDs on this page
+     * @param continuation The continuation token of the previous page, null for the first page
+     * @return The IDs and the continuation token for the next page
+     */
+    public EntryIds getNewEntryIds(String id, boolean unreadOnly, long newerThan, int number, String continuation) {
+        return this.requestEntryIds(id, unreadOnly, true, number, continuation, newerThan);
+    }
+
+    private EntryIds requestEntryIds(String id, boolean unreadOnly, boolean showNewest, int number,
+                                     String continuation, long newerThan) {
+        String apiUrl = "/v3/streams/ids?streamId=" + id + "&unreadOnly=" + unreadOnly + "&count=" + number +
+                "&ranked=" + (showNewest ? "newest" : "oldest");
+
+        if(newerThan > 0) {
+            apiUrl += "&newerThan=" + newerThan;
+        }
+
+        if(continuation != null) {
+            apiUrl += "&continuation=" + continuation;
+        }
 
-        return Entries.fromJSONArray(new JSONArray(response));
+        return EntryIds.fromJSONObject(this.getJSONObject(apiUrl));
+    }
+
+    /**
+     * Returns the newest unread article of a stream, only this one article is requested from the server
+     * @param id May be a subscription, feed, tag or category id
+     * @return The newest unread article or null if there is none
+     */
+    public Entry getNewestEntry(String id) {
+        return this.getEntryById(this.getNewestEntryId(id, true));
+    }
+
+    /**
+     * Returns the oldest unread article of a stream, only this one article is requested from the server
+     * @param id May be a subscription, feed, tag or category id
+     * @return The oldest unread article or null if there is none
+     */
+    public Entry getOldestEntry(String id) {
+        return this.getEntryById(this.getFirstEntryId(id, true, false));
+    }
+
+    /**
+     * Returns the ID of the newest article of a stream without loading any articles
+     * @param id May be a subscription, feed, tag or category id
+     * @param unreadOnly Only look at unread articles
+     * @return The ID or null if the stream is empty
+     */
+    public String getNewestEntryId(String id, boolean unreadOnly) {
+        return this.getFirstEntryId(id, unreadOnly, true);
+    }
+
+    private String getFirstEntryId(String id, boolean unreadOnly, boolean showNewest) {
+        ArrayList<String> ids = this.getEntryIds(id, unreadOnly, showNewest, 1, null).getIds();
+
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private Entry getEntryById(String entryId) {
+        if(entryId == null) {
+            return null;
+        }
+
+        Entries entries = this.getEntriesByIds(Collections.singletonList(entryId));
+
+        return entries.getNumberOfEntries() > 0 ? entries.get(0) : null;
+    }
+
+    /**
+     * Returns the entries for the given IDs, in the same order. Big lists will be split into chunks which are
+     * loaded in parallel (see setEntriesChunkSize and setEntriesParallelism). The chunks run on threads of their
+     * own, so this may also be called from tasks of the shared AsyncJFeedly executor.
+     * @param ids entry IDs
+     * @return A bunch of articles
+     */
+    public Entries getEntriesByIds(List<String> ids) {
+        if(ids.size() <= this.entriesChunkSize) {
+            return this.getEntriesChunk(ids);
+        }
+
+        final Semaphore permits = new Semaphore(this.entriesParallelism);
+        // not the shared executor: the caller may run on it and would wait for chunks queued behind it
+        ExecutorService executor = JFeedly.getEntriesExecutor();
+
+        ArrayList<Future<Entries>> chunks = new ArrayList<Future<Entries>>();
+
+        for(int from = 0; from < ids.size(); from += this.entriesChunkSize) {
+            final List<String> chunk = ids.subList(from, Math.min(from + this.entriesChunkSize, ids.size()));
+
+            permits.acquireUninterruptibly();
+
+            chunks.add(executor.submit(new Callable<Entries>() {
+                @Override
+                public Entries call() {
+                    try {
+                        return JFeedly.this.getEntriesChunk(chunk);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            }));
+        }
+
+        ArrayList<Entry> entries = new ArrayList<Entry>(ids.size());
+
+        try {
+            for(Future<Entries> chunk : chunks) {
+                entries.addAll(chunk.get().toArrayList());
+            }
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("jfeedly: interrupted while loading entries", ex);
+        } catch(ExecutionException ex) {
+            for(Future<Entries> chunk : chunks) {
+                chunk.cancel(true);
+            }
+
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new RuntimeException(ex.getCause());
+        }
+
+        return Entries.fromArrayList(entries);
+    }
+
+    private Entries getEntriesChunk(List<String> ids) {
+        if(ids.isEmpty()) {
+            return Entries.fromArrayList(new ArrayList<Entry>());
+        }
+
+        String input = new JSONArray(ids).toString();
+
+        // a failed chunk will be requested once again before the whole request fails
+        for(int attempt = 0; ; attempt++) {
+            try {
+                // parse the entries while they are received instead of building a JSONArray of the whole response
+                Reader response = httpHelper.openPostRequestToFeedly("/v3/entries/.mget", input, true);
+
+                if(response == null) {
+                    throw new RuntimeException("jfeedly: couldn't load entries");
+                }
+
+                return Entries.fromReader(response, this.lazyEntries, this.idDictionary);
+            } catch(RuntimeException ex) {
+                if(attempt > 0) {
+                    throw ex;
+                }
+
+                if(this.getVerbose()) {
+                    System.err.println("jfeedly: loading " + ids.size() + " entries failed, try again...");
+                }
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getEntriesExecutor() {
+        if(entriesExecutor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            // the number of threads is limited by the parallelism of the running getEntriesByIds calls
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "jfeedly-entries-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+            entriesExecutor = executor;
+        }
+
+        return entriesExecutor;
+    }
+
+    /** Set the maximum number of entries which will be requested with one "/v3/entries/.mget" call (Default: 250) */
+    public void setEntriesChunkSize(int chunkSize) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize has to be at least 1");
+        }
+
+        this.entriesChunkSize = chunkSize;
+    }
+
+    /** Set how many chunks of entries will be loaded at the same time (Default: 4) */
+    public void setEntriesParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism has to be at least 1");
+        }
+
+        this.entriesParallelism = parallelism;
+    }
+
+    /**
+     * Decode loaded entries only when they are used: the ID, the dates and the read state are read right away,
+     * everything else (e.g. the summary) when it is accessed for the first time. Speeds up workloads which
+     * only need IDs or sort the entries. Note that an entry with invalid fields only fails when such a
+     * field is accessed. (Default: false)
+     */
+    public void setLazyEntryDecoding(boolean lazyEntries) {
+        this.lazyEntries = lazyEntries;
+    }
+
+    /** Are loaded entries decoded lazily? */
+    public boolean isLazyEntryDecoding() {
+        return this.lazyEntries;
+    }
+
+    /**
+     * Returns the dictionary which is used to share one String instance per origin, category and subscription
+     * ID between all loaded entries, subscriptions and categories
+     */
+    public IdDictionary getIdDictionary() {
+        return this.idDictionary;
+    }
+
+    /**
+     * Returns a lazy stream of all articles of a category, feed, subscription or tag. The articles will be loaded
+     * page by page (500 per page) while iterating over it.
+     * @param id May be a subscription, feed, tag or category id
+     * @param unreadOnly List only the unread entries
+     * @param showNewest Newest first?
+     */
+    public EntryStream streamEntriesFor(String id, boolean unreadOnly, boolean showNewest) {
+        return this.streamEntriesFor(id, unreadOnly, showNewest, EntryStream.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Returns a lazy stream of all articles of a category, feed, subscription or tag. The articles will be loaded
+     * page by page while iterating over it.
+     * @param id May be a subscription, feed, tag or category id
+     * @param unreadOnly List only the unread entries
+     * @param showNewest Newest first?
+     * @param pageSize Number of articles which will be loaded with one request (at least 1)
+     */
+    public EntryStream streamEntriesFor(String id, boolean unreadOnly, boolean showNewest, int pageSize) {
+        return new EntryStream(this, id, unreadOnly, showNewest, pageSize);
     }
 
     /** Get a Feed specified by an ID */
@@ -437,6 +874,43 @@ public class JFeedly {
         return Feed.fromJSONObject(object);
     }
 
+    /**
+     * Returns the feeds for the given IDs with one request per 1'000 feeds
+     * @param feedIds feed IDs
+     * @return The feeds in the same order as the IDs, unknown feeds are left out
+     */
+    public ArrayList<Feed> getFeedsByIds(Collection<String> feedIds) {
+        ArrayList<String> ids = new ArrayList<String>(feedIds);
+        HashMap<String, Feed> found = new HashMap<String, Feed>();
+
+        for(int from = 0; from < ids.size(); from += MAX_FEEDS_PER_REQUEST) {
+            List<String> chunk = ids.subList(from, Math.min(from + MAX_FEEDS_PER_REQUEST, ids.size()));
+
+            String response = httpHelper.sendPostRequestToFeedly("/v3/feeds/.mget", new JSONArray(chunk).toString(),
+                    true);
+
+            JSONArray objects = new JSONArray(response);
+
+            for(int i = 0; i < objects.length(); i++) {
+                Feed feed = Feed.fromJSONObject(objects.getJSONObject(i));
+
+                found.put(feed.getId(), feed);
+            }
+        }
+
+        ArrayList<Feed> feeds = new ArrayList<Feed>(ids.size());
+
+        for(String id : ids) {
+            Feed feed = found.get(id);
+
+            if(feed != null) {
+                feeds.add(feed);
+            }
+        }
+
+        return feeds;
+    }
+
     /** Returns the number of unread articles for a category */
     public int getCountOfUnreadArticles(Category category) {
         return this.getCountOfUnreadArticles(category.getCategoryId());
@@ -449,59 +923,207 @@ public class JFeedly {
 
     /** Returns the number of unread articles for an ID (may be a feed, subscription, category or tag */
     protected int getCountOfUnreadArticles(String id) {
-        String response = httpHelper.sendGetRequestToFeedly("/v3/markers/counts");
+        int unreadCount = this.getUnreadCounts().getCount(id);
 
-        JSONObject object = new JSONObject(response);
+        if(unreadCount == -1) {
+            System.err.println("Unkown id: " + id);
+        }
+
+        return unreadCount;
+    }
+
+    /** Returns the number of unread articles for every subscription (subscription id => count) */
+    public HashMap<String, Integer> getCountsOfUnreadArticles(Subscriptions subscriptions) {
+        return this.getUnreadCounts().getCounts(subscriptions);
+    }
+
+    /** Returns the number of unread articles for every category (category id => count) */
+    public HashMap<String, Integer> getCountsOfUnreadArticles(Categories categories) {
+        return this.getUnreadCounts().getCounts(categories);
+    }
+
+    /**
+     * Returns the unread counts of all feeds, categories and tags with one request. Use this instead of calling
+     * getCountOfUnreadArticles for many subscriptions.
+     */
+    public UnreadCounts getUnreadCounts() {
+        return UnreadCounts.fromJSONObject(this.getJSONObject("/v3/markers/counts"));
+    }
 
-        JSONArray unreadcounts = object.getJSONArray("unreadcounts");
+    /**
+     * Returns the entries, feeds and categories which were marked as read (or unread) after the given time
+     * @param newerThan Time in milliseconds since the epoch
+     */
+    public ReadOperations getReadOperations(long newerThan) {
+        return ReadOperations.fromJSONObject(this.getJSONObject("/v3/markers/reads?newerThan=" + newerThan));
+    }
 
-        int unreadCount = -1;
+    /** Mark everything as read */
+    public void markEverythingAsRead() {
+        this.markAsRead(Category.getGlobalAllCategory(getProfile()));
+    }
 
-        for(int i = 0; i < unreadcounts.length(); i++) {
-            JSONObject unread = unreadcounts.getJSONObject(i);
+    /** Mark an article as read (queued if write-behind markers are enabled) */
+    public void markAsRead(Entry entry) {
+        if(writeBehindMarkers) {
+            this.getMarkerQueue().markAsRead(entry);
+        } else {
+            this.markAsRead(entry.getId(), "entries", null);
+        }
+    }
 
-            String unreadId = unread.getString("id");
+    /**
+     * Mark many articles as read with one request per 1'000 articles
+     * @return true if all markers were sent successfully
+     */
+    public boolean markAsRead(Collection<Entry> entries) {
+        return this.sendEntryMarkers(MarkerQueue.Action.READ.getApiAction(), getEntryIdsOf(entries));
+    }
 
-            if(id.equals(unreadId)) {
-                unreadCount = unread.getInt("count");
+    /** Mark an article as unread (queued if write-behind markers are enabled) */
+    public void markAsUnread(Entry entry) {
+        if(writeBehindMarkers) {
+            this.getMarkerQueue().markAsUnread(entry);
+        } else {
+            this.markAsUnread(Collections.singletonList(entry));
+        }
+    }
 
-                break;
-            }
+    /**
+     * Mark many articles as unread with one request per 1'000 articles
+     * @return true if all markers were sent successfully
+     */
+    public boolean markAsUnread(Collection<Entry> entries) {
+        return this.sendEntryMarkers(MarkerQueue.Action.UNREAD.getApiAction(), getEntryIdsOf(entries));
+    }
+
+    /** Save an article for later (queued if write-behind markers are enabled) */
+    public void markAsSaved(Entry entry) {
+        if(writeBehindMarkers) {
+            this.getMarkerQueue().markAsSaved(entry);
+        } else {
+            this.markAsSaved(Collections.singletonList(entry));
         }
+    }
 
-        if(unreadCount == -1) {
-            System.err.println("Unkown id: " + id);
+    /**
+     * Save many articles for later with one request per 1'000 articles
+     * @return true if all markers were sent successfully
+     */
+    public boolean markAsSaved(Collection<Entry> entries) {
+        return this.sendEntryMarkers(MarkerQueue.Action.SAVED.getApiAction(), getEntryIdsOf(entries));
+    }
+
+    /** Remove an article from the saved articles (queued if write-behind markers are enabled) */
+    public void markAsUnsaved(Entry entry) {
+        if(writeBehindMarkers) {
+            this.getMarkerQueue().markAsUnsaved(entry);
+        } else {
+            this.markAsUnsaved(Collections.singletonList(entry));
         }
+    }
 
-        return unreadCount;
+    /**
+     * Remove many articles from the saved articles with one request per 1'000 articles
+     * @return true if all markers were sent successfully
+     */
+    public boolean markAsUnsaved(Collection<Entry> entries) {
+        return this.sendEntryMarkers(MarkerQueue.Action.UNSAVED.getApiAction(), getEntryIdsOf(entries));
     }
 
-    /** Mark everything as read */
-    public void markEverythingAsRead() {
-        this.markAsRead(Category.getGlobalAllCategory(getProfile()));
+    /**
+     * Queue the single entry markers (read, unread, saved, unsaved) and send them in batches instead of sending
+     * one request per marker. Call flushMarkers() or shutdown() to make sure all markers are sent.
+     */
+    public void setWriteBehindMarkers(boolean writeBehindMarkers) {
+        this.writeBehindMarkers = writeBehindMarkers;
+
+        if(!writeBehindMarkers) {
+            this.flushMarkers();
+        }
     }
 
-    /** Mark an article as read */
-    public void markAsRead(Entry entry) {
-        this.markAsRead(entry.getId(), "entries", null);
+    /** Are the entry markers queued? */
+    public boolean isWriteBehindMarkers() {
+        return this.writeBehindMarkers;
+    }
+
+    /** Returns the queue which collects the entry markers if write-behind markers are enabled */
+    public synchronized MarkerQueue getMarkerQueue() {
+        if(markerQueue == null) {
+            markerQueue = new MarkerQueue(this);
+        }
+
+        return markerQueue;
+    }
+
+    /**
+     * Send all queued entry markers now
+     * @return true if all markers were sent successfully
+     */
+    public boolean flushMarkers() {
+        MarkerQueue queue;
+
+        synchronized(this) {
+            queue = markerQueue;
+        }
+
+        return queue == null || queue.flush();
+    }
+
+    /**
+     * Send an entry marker for many entries, split into requests of 1'000 entries
+     * @param action a marker action of the feedly API, e.g. "markAsRead" or "keepUnread"
+     * @param entryIds the entries
+     * @return true if all requests were successful
+     */
+    boolean sendEntryMarkers(String action, List<String> entryIds) {
+        boolean success = true;
+
+        for(int from = 0; from < entryIds.size(); from += MAX_MARKERS_PER_REQUEST) {
+            List<String> chunk = entryIds.subList(from, Math.min(from + MAX_MARKERS_PER_REQUEST, entryIds.size()));
+
+            JSONObject object = new JSONObject();
+
+            object.put("action", action);
+            object.put("type", "entries");
+            object.put("entryIds", new JSONArray(chunk));
+
+            if(!httpHelper.trySendPostRequestToFeedly("/v3/markers", object.toString(), true)) {
+                success = false;
+            }
+        }
+
+        return success;
+    }
+
+    private static List<String> getEntryIdsOf(Collection<Entry> entries) {
+        ArrayList<String> ids = new ArrayList<String>(entries.size());
+
+        for(Entry entry : entries) {
+            ids.add(entry.getId());
+        }
+
+        return ids;
     }
 
     /** Mark a subscription as read */
     public void markAsRead(Subscription subscription) {
-        this.markAsRead(subscription.getId(), "feeds", subscription.getNewestEntry(this));
+        this.markAsRead(subscription.getId(), "feeds", this.getNewestEntryId(subscription.getId(), true));
     }
 
     /** Mark a feed as read */
     public void markAsRead(Feed feed) {
-        this.markAsRead(feed.getId(), "feeds", feed.getNewestEntry(this));
+        this.markAsRead(feed.getId(), "feeds", this.getNewestEntryId(feed.getId(), true));
     }
 
     /** Mark a category as read */
     public void markAsRead(Category category) {
-        this.markAsRead(category.getCategoryId(), "categories", category.getNewestEntry(this));
+        this.markAsRead(category.getCategoryId(), "categories",
+                this.getNewestEntryId(category.getCategoryId(), true));
     }
 
-    private void markAsRead(String id, String type, Entry newestEntry) {
+    private void markAsRead(String id, String type, String lastReadEntryId) {
         JSONObject object = new JSONObject();
 
         object.put("action", "markAsRead");
@@ -525,8 +1147,8 @@ public class JFeedly {
 
         object.put(typeIdIdentificator, ids);
 
-        if(!type.equals("entries") && newestEntry != null) {
-            object.put("lastReadEntryId", newestEntry.getId());
+        if(!type.equals("entries") && lastReadEntryId != null) {
+            object.put("lastReadEntryId", lastReadEntryId);
         }
 
         httpHelper.sendPostRequestToFeedly("/v3/markers", object.toString(), true);
@@ -1,23 +1,110 @@
 package de.kasoki.jfeedly;
 
+import de.kasoki.jfeedly.helper.BoundedCache;
+import de.kasoki.jfeedly.helper.CacheStatistics;
+import de.kasoki.jfeedly.helper.CachedResource;
 import de.kasoki.jfeedly.helper.CachedType;
+import de.kasoki.jfeedly.helper.ConditionalResponse;
+import de.kasoki.jfeedly.helper.DiskCache;
+import de.kasoki.jfeedly.helper.SingleFlight;
 import de.kasoki.jfeedly.model.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * API handler for the Feedly API which caches the responses of the server. This class is thread-safe, one handler
+ * can be shared by many threads. If several threads miss the same key at the same time only one of them asks the
+ * server, the others wait for its result. The cached categories, subscriptions and tags are shared by all callers,
+ * use getCategoriesSnapshot(), getSubscriptionsSnapshot() and getTagsSnapshot() to read them without locking.
+ * @author Christopher Kaster
+ */
 public class JFeedlyCached extends JFeedly {
 
     private CachedType<Profile> cachedProfile;
     private CachedType<Categories> cachedCategories;
     private CachedType<Subscriptions> cachedSubscriptions;
     private CachedType<Tags> cachedTags;
-    private HashMap<String, CachedType<ArrayList<String>>> cachedEntryIds;
-    private HashMap<String, CachedType<Entry>> cachedEntries;
-    private HashMap<String, CachedType<Feed>> cachedFeed;
-    private HashMap<String, CachedType<Integer>> cachedUnreadCount;
+    private volatile BoundedCache<CachedType<EntryIds>> cachedEntryIds;
+    private volatile BoundedCache<CachedType<Entry>> cachedEntries;
+    private volatile BoundedCache<CachedType<Feed>> cachedFeed;
+    private CachedType<UnreadCounts> cachedUnreadCounts;
     private CachedType<String> cachedOPML;
 
+    // the last snapshot of a cached value and the value it was created from
+    private static class Snapshot<T> {
+        private T source;
+        private T snapshot;
+
+        Snapshot(T source, T snapshot) {
+            this.source = source;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private AtomicReference<Snapshot<Categories>> categoriesSnapshot = new AtomicReference<Snapshot<Categories>>();
+    private AtomicReference<Snapshot<Subscriptions>> subscriptionsSnapshot =
+            new AtomicReference<Snapshot<Subscriptions>>();
+    private AtomicReference<Snapshot<Tags>> tagsSnapshot = new AtomicReference<Snapshot<Tags>>();
+
+    private SingleFlight loads;
+
+    private static final int FRESH = 0;
+    private static final int STALE = 1;
+    private static final int EXPIRED = 2;
+
+    private volatile boolean refreshAhead = false;
+    private volatile double refreshAheadFactor = 0.8;
+    private volatile long maximumStaleTime = 60 * CachedType.ONE_MINUTE;
+    private ExecutorService refreshExecutor;
+    private Set<String> refreshing;
+
+    private ConcurrentHashMap<CachedResource, Long> refreshTimes;
+    private ConcurrentHashMap<String, Long> idRefreshTimes;
+
+    private volatile DiskCache diskCache;
+    private volatile long diskCacheMaximumAge = DEFAULT_DISK_CACHE_MAXIMUM_AGE;
+
+    // a feed or category which was marked as read, applies to the entries written to the disk before
+    private static class ReadMark {
+        // entries crawled until then are read
+        private long asOf;
+        // when the mark was applied, entries written to the disk afterwards are up to date
+        private long appliedAt;
+    }
+
+    // feed or category id => read mark
+    private HashMap<String, ReadMark> diskReadMarks = new HashMap<String, ReadMark>();
+
+    private static final String DISK_READ_MARKS_KEY = "|diskReadMarks";
+
+    public static final long DEFAULT_MAXIMUM_CACHED_ENTRIES = 20000;
+    public static final long DEFAULT_MAXIMUM_CACHED_STREAMS = 1000;
+    public static final long DEFAULT_MAXIMUM_CACHED_FEEDS = 1000;
+    public static final long DEFAULT_DISK_CACHE_MAXIMUM_AGE = 7 * 24 * 60 * CachedType.ONE_MINUTE;
+
     private JFeedlyCached(String basename, String clientId, String apiSecretKey) {
         super(basename, clientId, apiSecretKey);
 
@@ -25,47 +112,160 @@ public class JFeedlyCached extends JFeedly {
         cachedCategories = new CachedType<Categories>();
         cachedSubscriptions = new CachedType<Subscriptions>();
         cachedTags = new CachedType<Tags>();
-        cachedEntryIds = new HashMap<String, CachedType<ArrayList<String>>>();
-        cachedEntries = new HashMap<String, CachedType<Entry>>();
-        cachedFeed = new HashMap<String, CachedType<Feed>>();
-        cachedUnreadCount = new HashMap<String, CachedType<Integer>>();
+        cachedEntryIds = BoundedCache.withMaximumSize(DEFAULT_MAXIMUM_CACHED_STREAMS);
+        cachedEntries = BoundedCache.withMaximumSize(DEFAULT_MAXIMUM_CACHED_ENTRIES);
+        cachedFeed = BoundedCache.withMaximumSize(DEFAULT_MAXIMUM_CACHED_FEEDS);
+        cachedUnreadCounts = new CachedType<UnreadCounts>();
         cachedOPML = new CachedType<String>();
+
+        loads = new SingleFlight();
+
+        refreshTimes = new ConcurrentHashMap<CachedResource, Long>();
+        refreshTimes.put(CachedResource.PROFILE, 60 * CachedType.ONE_MINUTE);
+        refreshTimes.put(CachedResource.UNREAD_COUNTS, CachedType.ONE_MINUTE);
+
+        idRefreshTimes = new ConcurrentHashMap<String, Long>();
+
+        refreshing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     }
 
     @Override
     public Profile getProfile() {
-        if(cachedProfile.isEmpty() || cachedProfile.isExpired()) {
-            cachedProfile.set(super.getProfile());
-        }
+        return this.getCached(cachedProfile, CachedResource.PROFILE, new Supplier<Profile>() {
+            @Override
+            public Profile get() {
+                if(getConnection() == null) {
+                    return JFeedlyCached.super.getProfile();
+                }
 
-        return cachedProfile.get();
+                return getConditional("/v3/profile/", cachedProfile, new Function<String, Profile>() {
+                    @Override
+                    public Profile apply(String response) {
+                        return Profile.fromJSONObject(new JSONObject(response));
+                    }
+                });
+            }
+        });
     }
 
     @Override
     public Categories getCategories() {
-        if(cachedCategories.isEmpty() || cachedCategories.isExpired()) {
-            cachedCategories.set(super.getCategories());
-        }
+        return this.getCached(cachedCategories, CachedResource.CATEGORIES, new Supplier<Categories>() {
+            @Override
+            public Categories get() {
+                if(getConnection() == null) {
+                    return JFeedlyCached.super.getCategories();
+                }
 
-        return cachedCategories.get();
+                return getConditional("/v3/categories/", cachedCategories, new Function<String, Categories>() {
+                    @Override
+                    public Categories apply(String response) {
+                        return Categories.fromJSONArray(new JSONArray(response), getIdDictionary());
+                    }
+                });
+            }
+        });
     }
 
     @Override
     public Subscriptions getSubscriptions() {
-        if(cachedSubscriptions.isEmpty() || cachedSubscriptions.isExpired()) {
-            cachedSubscriptions.set(super.getSubscriptions());
-        }
+        return this.getCached(cachedSubscriptions, CachedResource.SUBSCRIPTIONS, new Supplier<Subscriptions>() {
+            @Override
+            public Subscriptions get() {
+                if(getConnection() == null) {
+                    return JFeedlyCached.super.getSubscriptions();
+                }
 
-        return cachedSubscriptions.get();
+                return getConditional("/v3/subscriptions/", cachedSubscriptions,
+                        new Function<String, Subscriptions>() {
+                            @Override
+                            public Subscriptions apply(String response) {
+                                return Subscriptions.fromJSONArray(new JSONArray(response),
+                                        getIdDictionary());
+                            }
+                        });
+            }
+        });
     }
 
     @Override
     public Tags getTags() {
-        if(cachedTags.isEmpty() || cachedTags.isExpired()) {
-            cachedTags.set(super.getTags());
+        return this.getCached(cachedTags, CachedResource.TAGS, new Supplier<Tags>() {
+            @Override
+            public Tags get() {
+                if(getConnection() == null) {
+                    return JFeedlyCached.super.getTags();
+                }
+
+                return getConditional("/v3/tags/", cachedTags, new Function<String, Tags>() {
+                    @Override
+                    public Tags apply(String response) {
+                        return Tags.fromJSONArray(new JSONArray(response));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns an immutable snapshot of the cached categories. The snapshot is created once per loaded value and
+     * shared by all callers, changes made to the (mutable) cached categories afterwards are not part of it.
+     */
+    @Override
+    public Categories getCategoriesSnapshot() {
+        return this.getSnapshot(this.getCategories(), categoriesSnapshot, new Function<Categories, Categories>() {
+            @Override
+            public Categories apply(Categories categories) {
+                return categories.snapshot();
+            }
+        });
+    }
+
+    /**
+     * Returns an immutable snapshot of the cached subscriptions. The snapshot is created once per loaded value and
+     * shared by all callers, changes made to the (mutable) cached subscriptions afterwards are not part of it.
+     */
+    @Override
+    public Subscriptions getSubscriptionsSnapshot() {
+        return this.getSnapshot(this.getSubscriptions(), subscriptionsSnapshot,
+                new Function<Subscriptions, Subscriptions>() {
+                    @Override
+                    public Subscriptions apply(Subscriptions subscriptions) {
+                        return subscriptions.snapshot();
+                    }
+                });
+    }
+
+    /**
+     * Returns an immutable snapshot of the cached tags. The snapshot is created once per loaded value and shared by
+     * all callers.
+     */
+    @Override
+    public Tags getTagsSnapshot() {
+        return this.getSnapshot(this.getTags(), tagsSnapshot, new Function<Tags, Tags>() {
+            @Override
+            public Tags apply(Tags tags) {
+                return tags.snapshot();
+            }
+        });
+    }
+
+    private <T> T getSnapshot(T current, AtomicReference<Snapshot<T>> last, Function<T, T> createSnapshot) {
+        if(current == null) {
+            return null;
         }
 
-        return cachedTags.get();
+        Snapshot<T> known = last.get();
+
+        if(known != null && known.source == current) {
+            return known.snapshot;
+        }
+
+        T snapshot = createSnapshot.apply(current);
+
+        last.set(new Snapshot<T>(current, snapshot));
+
+        return snapshot;
     }
 
     /**
@@ -77,36 +277,122 @@ public class JFeedlyCached extends JFeedly {
      * @return A bunch of articles
      */
     @Override
-    public Entries getEntriesFor(String id, boolean unreadOnly, boolean showNewest, int number) {
-        if(cachedEntryIds.containsKey(id)) {
-            CachedType<ArrayList<String>> entryIds = cachedEntryIds.get(id);
+    public Entries getEntriesFor(final String id, final boolean unreadOnly, final boolean showNewest,
+                                 final int number) {
+        final String key = JFeedlyCached.getStreamKey(id, unreadOnly, showNewest, number, null);
 
-            if(entryIds.isEmpty() || entryIds.isExpired()) {
-                Entries entries = super.getEntriesFor(id, unreadOnly, showNewest, number);
+        CachedType<EntryIds> entryIds = cachedEntryIds.get(key);
 
-                entryIds.set(entries.toIdsList());
+        int state = this.getState(entryIds, CachedResource.ENTRY_IDS, id);
 
-                // cache entry ids
-                cachedEntryIds.put(id, entryIds);
+        if(state == STALE) {
+            // reload the ids and the new entries of this stream in the background
+            this.scheduleRefresh("stream:" + key, new Supplier<Entries>() {
+                @Override
+                public Entries get() {
+                    EntryIds ids = JFeedlyCached.super.getEntryIds(id, unreadOnly, showNewest, number, null);
 
-                // cache entries
-                cacheEntries(entries);
+                    cachedEntryIds.put(key, new CachedType<EntryIds>(ids));
+
+                    return JFeedlyCached.this.getEntriesByIds(ids.getIds());
+                }
+            });
+        }
+
+        if(state != EXPIRED) {
+            Entries entries = this.getCachedEntries(entryIds.get().getIds());
+
+            if(entries != null) {
+                return entries;
+            }
+        }
+
+        // the ids and the missing entries are loaded (and cached) by getEntryIds and getEntriesByIds
+        return loads.execute("stream:" + key, new Supplier<Entries>() {
+            @Override
+            public Entries get() {
+                return JFeedlyCached.super.getEntriesFor(id, unreadOnly, showNewest, number);
+            }
+        });
+    }
+
+    /**
+     * Returns one page of entry IDs of a stream
+     * @param id May be a subscription, feed, tag or category id
+     * @param unreadOnly List only the unread entries
+     * @param showNewest Newest first?
+     * @param number Maximum number of IDs on this page
+     * @param continuation The continuation token of the previous page, null for the first page
+     * @return The IDs and the continuation token for the next page
+     */
+    @Override
+    public EntryIds getEntryIds(final String id, final boolean unreadOnly, final boolean showNewest,
+                                final int number, final String continuation) {
+        String key = JFeedlyCached.getStreamKey(id, unreadOnly, showNewest, number, continuation);
+
+        return this.getCached(cachedEntryIds, CachedResource.ENTRY_IDS, id, key, new Supplier<EntryIds>() {
+            @Override
+            public EntryIds get() {
+                return JFeedlyCached.super.getEntryIds(id, unreadOnly, showNewest, number, continuation);
+            }
+        });
+    }
+
+    /**
+     * Returns the entries for the given IDs, in the same order. Only entries which are not cached will be
+     * requested from the server.
+     * @param ids entry IDs
+     * @return A bunch of articles
+     */
+    @Override
+    public Entries getEntriesByIds(List<String> ids) {
+        HashMap<String, Entry> found = new HashMap<String, Entry>();
+        ArrayList<String> missing = new ArrayList<String>();
+        ArrayList<String> stale = new ArrayList<String>();
+
+        for(String id : ids) {
+            CachedType<Entry> cachedEntry = cachedEntries.get(id);
+
+            int state = this.getState(cachedEntry, CachedResource.ENTRIES, null);
+
+            if(state == EXPIRED) {
+                missing.add(id);
+            } else {
+                found.put(id, cachedEntry.get());
+
+                if(state == STALE) {
+                    stale.add(id);
+                }
             }
-        } else {
-            Entries entries = super.getEntriesFor(id, unreadOnly, showNewest, number);
+        }
 
-            CachedType<ArrayList<String>> cached = new CachedType<ArrayList<String>>(entries.toIdsList());
+        if(!missing.isEmpty() && diskCache != null) {
+            missing = this.getEntriesFromDisk(missing, found, stale);
+        }
+
+        this.scheduleEntriesRefresh(stale);
+
+        if(!missing.isEmpty()) {
+            Entries loaded = super.getEntriesByIds(missing);
 
-            // cache entry ids
-            cachedEntryIds.put(id, cached);
+            cacheEntries(loaded);
 
-            // cache entries
-            cacheEntries(entries);
+            for(Entry entry : loaded) {
+                found.put(entry.getId(), entry);
+            }
         }
 
-        CachedType<ArrayList<String>> entryIds = cachedEntryIds.get(id);
+        ArrayList<Entry> entries = new ArrayList<Entry>(ids.size());
+
+        for(String id : ids) {
+            Entry entry = found.get(id);
 
-        return this.getEntries(entryIds.get());
+            if(entry != null) {
+                entries.add(entry);
+            }
+        }
+
+        return Entries.fromArrayList(entries);
     }
 
     private void cacheEntries(Entries entries) {
@@ -115,52 +401,524 @@ public class JFeedlyCached extends JFeedly {
 
             cachedEntries.put(entry.getId(), cachedEntry);
         }
+
+        DiskCache disk = diskCache;
+
+        if(disk != null) {
+            HashMap<String, String> values = new HashMap<String, String>();
+
+            for(Entry entry : entries) {
+                values.put(entry.getId(), entry.toJSONString());
+            }
+
+            disk.putAll(values);
+        }
     }
 
-    private Entries getEntries(ArrayList<String> ids) {
-        ArrayList<Entry> entries = new ArrayList<Entry>();
+    /** Look up entries in the disk cache, returns the IDs which are not on the disk either (or too old) */
+    private ArrayList<String> getEntriesFromDisk(ArrayList<String> ids, HashMap<String, Entry> found,
+                                                 ArrayList<String> stale) {
+        DiskCache disk = diskCache;
+        ArrayList<String> missing = new ArrayList<String>();
 
         for(String id : ids) {
-            entries.add(cachedEntries.get(id).get());
+            String value = disk != null ? disk.get(id) : null;
+            long writeTime = value != null ? disk.getWriteTime(id) : -1;
+
+            if(value == null || writeTime < 0) {
+                missing.add(id);
+                continue;
+            }
+
+            // the disk cache only contains entries written by cacheEntries, they are decoded when used
+            Entry entry = Entry.fromJSONString(value, this.getIdDictionary());
+
+            if(this.isMarkedAsReadOnDisk(entry, writeTime)) {
+                entry = entry.withUnread(false);
+            }
+
+            // the entry gets older since it was written to the disk, not since it was read again
+            CachedType<Entry> cachedEntry = new CachedType<Entry>(entry, new Date(writeTime));
+
+            int state = this.getState(cachedEntry, CachedResource.ENTRIES, null);
+
+            if(state == EXPIRED) {
+                missing.add(id);
+                continue;
+            } else if(state == STALE) {
+                stale.add(id);
+            }
+
+            cachedEntries.put(id, cachedEntry);
+            found.put(id, entry);
+        }
+
+        return missing;
+    }
+
+    /** Returns the cached entries or null if at least one of them isn't cached (anymore) */
+    private Entries getCachedEntries(ArrayList<String> ids) {
+        ArrayList<Entry> entries = new ArrayList<Entry>(ids.size());
+        ArrayList<String> stale = new ArrayList<String>();
+
+        for(String id : ids) {
+            CachedType<Entry> cachedEntry = cachedEntries.get(id);
+
+            int state = this.getState(cachedEntry, CachedResource.ENTRIES, null);
+
+            if(state == EXPIRED) {
+                return null;
+            } else if(state == STALE) {
+                stale.add(id);
+            }
+
+            entries.add(cachedEntry.get());
         }
 
+        this.scheduleEntriesRefresh(stale);
+
         return Entries.fromArrayList(entries);
     }
 
     /** Get a Feed specified by an ID */
     @Override
-    public Feed getFeedById(String feedId) {
-        if(cachedFeed.containsKey(feedId)) {
-            CachedType<Feed> feed = cachedFeed.get(feedId);
+    public Feed getFeedById(final String feedId) {
+        return this.getCached(cachedFeed, CachedResource.FEEDS, feedId, feedId, new Supplier<Feed>() {
+            @Override
+            public Feed get() {
+                return JFeedlyCached.super.getFeedById(feedId);
+            }
+        });
+    }
+
+    /** Returns the feeds for the given IDs, only the feeds which aren't cached are requested */
+    @Override
+    public ArrayList<Feed> getFeedsByIds(Collection<String> feedIds) {
+        HashMap<String, Feed> found = new HashMap<String, Feed>();
+        ArrayList<String> missing = new ArrayList<String>();
+        final ArrayList<String> stale = new ArrayList<String>();
+
+        for(String id : feedIds) {
+            CachedType<Feed> cached = cachedFeed.get(id);
+
+            int state = this.getState(cached, CachedResource.FEEDS, id);
+
+            if(state == EXPIRED) {
+                missing.add(id);
+            } else {
+                found.put(id, cached.get());
+
+                if(state == STALE) {
+                    stale.add(id);
+                }
+            }
+        }
+
+        if(!stale.isEmpty()) {
+            this.scheduleRefresh("feeds:" + stale.get(0) + ":" + stale.size(), new Supplier<ArrayList<Feed>>() {
+                @Override
+                public ArrayList<Feed> get() {
+                    return cacheFeeds(JFeedlyCached.super.getFeedsByIds(stale));
+                }
+            });
+        }
+
+        if(!missing.isEmpty()) {
+            for(Feed feed : cacheFeeds(super.getFeedsByIds(missing))) {
+                found.put(feed.getId(), feed);
+            }
+        }
+
+        ArrayList<Feed> feeds = new ArrayList<Feed>(feedIds.size());
+
+        for(String id : feedIds) {
+            Feed feed = found.get(id);
+
+            if(feed != null) {
+                feeds.add(feed);
+            }
+        }
+
+        return feeds;
+    }
+
+    private ArrayList<Feed> cacheFeeds(ArrayList<Feed> feeds) {
+        for(Feed feed : feeds) {
+            cachedFeed.put(feed.getId(), new CachedType<Feed>(feed));
+        }
+
+        return feeds;
+    }
+
+    /** Returns the unread counts of all feeds, categories and tags (one snapshot for all IDs) */
+    @Override
+    public UnreadCounts getUnreadCounts() {
+        return this.getCached(cachedUnreadCounts, CachedResource.UNREAD_COUNTS, new Supplier<UnreadCounts>() {
+            @Override
+            public UnreadCounts get() {
+                return JFeedlyCached.super.getUnreadCounts();
+            }
+        });
+    }
+
+    /**
+     * Limit the number of cached entries (Default: 20'000). When the limit is reached the least frequently
+     * used entries will be evicted. This clears the entries cache.
+     * @param maximumEntries Maximum number of cached entries
+     */
+    public void setMaximumCachedEntries(long maximumEntries) {
+        cachedEntries = BoundedCache.withMaximumSize(maximumEntries);
+    }
+
+    /**
+     * Limit the cached entries by their estimated size in memory instead of their number. This clears the entries
+     * cache.
+     * @param maximumBytes Maximum estimated size of all cached entries in bytes
+     */
+    public void setMaximumCachedEntriesWeight(long maximumBytes) {
+        cachedEntries = new BoundedCache<CachedType<Entry>>(maximumBytes,
+                new BoundedCache.Weigher<CachedType<Entry>>() {
+                    @Override
+                    public long weigh(String key, CachedType<Entry> value) {
+                        return JFeedlyCached.estimateSize(value.get());
+                    }
+                }, maximumBytes / 2048);
+    }
+
+    /** Limit the number of cached streams (lists of entry IDs), default: 1'000. This clears the streams cache. */
+    public void setMaximumCachedStreams(long maximumStreams) {
+        cachedEntryIds = BoundedCache.withMaximumSize(maximumStreams);
+    }
+
+    /** Limit the number of cached feeds (Default: 1'000). This clears the feeds cache. */
+    public void setMaximumCachedFeeds(long maximumFeeds) {
+        cachedFeed = BoundedCache.withMaximumSize(maximumFeeds);
+    }
+
+    /** Returns hit, miss and eviction statistics of the entries cache */
+    public CacheStatistics getEntriesCacheStatistics() {
+        return cachedEntries.getStatistics();
+    }
+
+    /** Returns hit, miss and eviction statistics of the streams cache */
+    public CacheStatistics getStreamsCacheStatistics() {
+        return cachedEntryIds.getStatistics();
+    }
+
+    /** Returns hit, miss and eviction statistics of the feeds cache */
+    public CacheStatistics getFeedsCacheStatistics() {
+        return cachedFeed.getStatistics();
+    }
+
+    /** Forget the cached entry ID lists of a stream, the next request will ask the server again */
+    public void invalidateStream(final String streamId) {
+        cachedEntryIds.removeIf(new BoundedCache.Condition<CachedType<EntryIds>>() {
+            @Override
+            public boolean matches(String key, CachedType<EntryIds> value) {
+                return key.startsWith(streamId + "|");
+            }
+        });
+    }
+
+    /**
+     * Apply read state changes (see JFeedly.getReadOperations) to the cached entries. Cached unread-only ID lists
+     * and the unread counts are dropped, because they can't be updated without asking the server.
+     */
+    public void applyReadOperations(ReadOperations operations) {
+        if(operations.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Entry> changed = new ArrayList<Entry>();
+
+        // entries of feeds and categories which were marked as read can only be found by looking at all of them
+        for(CachedType<Entry> cachedEntry : cachedEntries.values()) {
+            Entry entry = cachedEntry.get();
+
+            if(entry != null && entry.isUnread() != operations.isUnread(entry)) {
+                changed.add(entry.withUnread(!entry.isUnread()));
+            }
+        }
+
+        this.cacheEntries(Entries.fromArrayList(changed));
+
+        DiskCache disk = diskCache;
+
+        if(disk != null) {
+            // entries which are only on the disk are loaded again when they are needed
+            for(String id : operations.getReadEntryIds()) {
+                if(cachedEntries.peek(id) == null) {
+                    disk.remove(id);
+                }
+            }
+
+            for(String id : operations.getUnreadEntryIds()) {
+                if(cachedEntries.peek(id) == null) {
+                    disk.remove(id);
+                }
+            }
 
-            if(feed.isEmpty() || feed.isExpired()) {
-                feed.set(super.getFeedById(feedId));
+            if(!operations.getReadFeeds().isEmpty() || !operations.getReadCategories().isEmpty()) {
+                this.addDiskReadMarks(operations);
             }
-        } else {
-            CachedType<Feed> feed = new CachedType<Feed>(super.getFeedById(feedId));
+        }
+
+        cachedEntryIds.removeIf(new BoundedCache.Condition<CachedType<EntryIds>>() {
+            @Override
+            public boolean matches(String key, CachedType<EntryIds> value) {
+                return key.substring(key.indexOf('|') + 1).startsWith("true|");
+            }
+        });
+
+        cachedUnreadCounts.expire();
+    }
+
+    /**
+     * Entries of feeds and categories which were marked as read can only be found by reading the whole disk cache.
+     * Instead the marks are kept and applied to the entries which are read from the disk, and the outdated records
+     * are removed in the background.
+     */
+    private void addDiskReadMarks(ReadOperations operations) {
+        long now = System.currentTimeMillis();
+
+        synchronized(diskReadMarks) {
+            this.addDiskReadMarks(operations.getReadFeeds(), now);
+            this.addDiskReadMarks(operations.getReadCategories(), now);
+
+            // records written before the maximum age of the disk cache are expired anyway
+            Iterator<ReadMark> marks = diskReadMarks.values().iterator();
+
+            while(marks.hasNext()) {
+                if(marks.next().appliedAt < now - diskCacheMaximumAge) {
+                    marks.remove();
+                }
+            }
+        }
+
+        this.scheduleDiskCleanUp();
+    }
+
+    private void addDiskReadMarks(HashMap<String, Long> readStreams, long now) {
+        for(Map.Entry<String, Long> readStream : readStreams.entrySet()) {
+            ReadMark mark = diskReadMarks.get(readStream.getKey());
+
+            if(mark == null) {
+                mark = new ReadMark();
+                mark.asOf = readStream.getValue();
+
+                diskReadMarks.put(readStream.getKey(), mark);
+            }
+
+            mark.asOf = Math.max(mark.asOf, readStream.getValue());
+            mark.appliedAt = now;
+        }
+    }
+
+    /** Was the feed or a category of this unread entry marked as read after it was written to the disk? */
+    private boolean isMarkedAsReadOnDisk(Entry entry, long writeTime) {
+        if(!entry.isUnread()) {
+            return false;
+        }
+
+        synchronized(diskReadMarks) {
+            if(diskReadMarks.isEmpty()) {
+                return false;
+            }
+        }
+
+        // this decodes lazy entries, so it's done outside of the lock
+        long crawled = entry.getCrawledDate().getTime();
+        String originId = entry.getOriginId();
+        ArrayList<String> categoryIds = entry.getCategoryIds();
+
+        synchronized(diskReadMarks) {
+            if(this.isMarkedAsRead(originId, crawled, writeTime)) {
+                return true;
+            }
+
+            for(String categoryId : categoryIds) {
+                if(this.isMarkedAsRead(categoryId, crawled, writeTime)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private boolean isMarkedAsRead(String id, long crawled, long writeTime) {
+        ReadMark mark = diskReadMarks.get(id);
+
+        return mark != null && writeTime <= mark.appliedAt && crawled <= mark.asOf;
+    }
+
+    /** Remove the records of entries which were marked as read on the disk, so they are gone after a restart */
+    private void scheduleDiskCleanUp() {
+        if(!refreshing.add(DISK_READ_MARKS_KEY)) {
+            // already scheduled
+            return;
+        }
+
+        try {
+            this.getRefreshExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    // marks which are added while the disk is read need another run
+                    refreshing.remove(DISK_READ_MARKS_KEY);
+
+                    try {
+                        removeReadEntriesFromDisk();
+                    } catch(RuntimeException ex) {
+                        if(getVerbose()) {
+                            System.err.println("jfeedly: removing read entries from the disk cache failed");
+                            ex.printStackTrace();
+                        }
+                    }
+                }
+            });
+        } catch(RejectedExecutionException ex) {
+            // the queue is full, the marks are still applied when the entries are read
+            refreshing.remove(DISK_READ_MARKS_KEY);
+        }
+    }
+
+    private void removeReadEntriesFromDisk() {
+        DiskCache disk = diskCache;
+
+        if(disk == null) {
+            return;
+        }
+
+        for(String id : disk.getKeys()) {
+            String value = disk.get(id);
+            long writeTime = disk.getWriteTime(id);
+
+            if(value == null || writeTime < 0) {
+                continue;
+            }
+
+            if(this.isMarkedAsReadOnDisk(Entry.fromJSONString(value, this.getIdDictionary()), writeTime)) {
+                // a newer record may have been written in the meantime, it is only loaded again then
+                disk.remove(id);
+            }
+        }
+    }
 
-            cachedFeed.put(feedId, feed);
+    /**
+     * Keep the entries in a cache on the disk (in the "cache" directory under the config path), so they don't have
+     * to be downloaded again after a restart. Call shutdown() or flushDiskCache() before the process ends, entries
+     * which were written after the last flush are recovered on the next start as well. Entries keep the age they
+     * had when they were written, so the refresh time of ENTRIES applies to them as well: set a longer refresh time
+     * for ENTRIES to use them for longer than the global refresh time. When feeds or categories are marked as read
+     * (see applyReadOperations) their entries on the disk are marked as read when they are loaded, and removed
+     * from the disk by a background task which reads the whole disk cache once.
+     * @param enabled enable or disable the disk cache
+     */
+    public synchronized void setDiskCacheEnabled(boolean enabled) {
+        if(enabled && diskCache == null) {
+            try {
+                diskCache = new DiskCache(new File(this.getConfigPath(), "cache"), "entries", diskCacheMaximumAge);
+            } catch(IOException ex) {
+                ex.printStackTrace();
+            }
+        } else if(!enabled && diskCache != null) {
+            diskCache.close();
+            diskCache = null;
         }
+    }
 
-        return cachedFeed.get(feedId).get();
+    /** Is the disk cache enabled? */
+    public boolean isDiskCacheEnabled() {
+        return diskCache != null;
     }
 
-    /** Returns the number of unread articles for an ID (may be a feed, subscription, category or tag */
+    /** Returns the disk cache or null if it isn't enabled */
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /** Set how long entries are kept in the disk cache in milliseconds (Default: 7 days) */
+    public synchronized void setDiskCacheMaximumAge(long maximumAge) {
+        this.diskCacheMaximumAge = maximumAge;
+
+        if(diskCache != null) {
+            diskCache.setMaximumAge(maximumAge);
+        }
+    }
+
+    /** Write the disk cache and its index to the disk */
+    public void flushDiskCache() {
+        DiskCache disk = diskCache;
+
+        if(disk != null) {
+            disk.flush();
+        }
+    }
+
+    /** Send all queued markers, close the disk cache and all connections to the feedly servers */
     @Override
-    protected int getCountOfUnreadArticles(String id) {
-        if(cachedUnreadCount.containsKey(id)) {
-            CachedType<Integer> unreadCount = cachedUnreadCount.get(id);
+    public void shutdown() {
+        super.shutdown();
+
+        this.setDiskCacheEnabled(false);
+    }
+
+    /** Remove all expired values from the caches */
+    public void cleanUp() {
+        cachedEntries.removeIf(new BoundedCache.Condition<CachedType<Entry>>() {
+            @Override
+            public boolean matches(String key, CachedType<Entry> value) {
+                return value.isExpired(getRefreshTime(CachedResource.ENTRIES));
+            }
+        });
+
+        cachedEntryIds.removeIf(new BoundedCache.Condition<CachedType<EntryIds>>() {
+            @Override
+            public boolean matches(String key, CachedType<EntryIds> value) {
+                // the key starts with the stream id
+                String id = key.substring(0, key.indexOf('|'));
+
+                return value.isExpired(getRefreshTime(CachedResource.ENTRY_IDS, id));
+            }
+        });
 
-            if(unreadCount.isEmpty() || unreadCount.isExpired()) {
-                unreadCount.set(super.getCountOfUnreadArticles(id));
+        cachedFeed.removeIf(new BoundedCache.Condition<CachedType<Feed>>() {
+            @Override
+            public boolean matches(String key, CachedType<Feed> value) {
+                return value.isExpired(getRefreshTime(CachedResource.FEEDS, key));
             }
-        } else {
-            CachedType<Integer> unreadCount = new CachedType<Integer>(super.getCountOfUnreadArticles(id));
+        });
+
+        DiskCache disk = diskCache;
+
+        if(disk != null) {
+            disk.removeExpired();
+        }
+    }
+
+    /** Rough estimation of the memory used by an entry (2 bytes per char + object overhead) */
+    private static long estimateSize(Entry entry) {
+        long size = 160;
+
+        size += JFeedlyCached.estimateSize(entry.getId());
+        size += JFeedlyCached.estimateSize(entry.getFingerprint());
+        size += JFeedlyCached.estimateSize(entry.getOriginId());
+        size += JFeedlyCached.estimateSize(entry.getAuthor());
+        size += JFeedlyCached.estimateSize(entry.getTitle());
+        size += JFeedlyCached.estimateSize(entry.getSummaryContent());
+        size += JFeedlyCached.estimateSize(entry.getSummaryDirection());
+        size += JFeedlyCached.estimateSize(entry.getVisualUrl());
+        size += JFeedlyCached.estimateSize(entry.getVisualContentType());
 
-            cachedUnreadCount.put(id, unreadCount);
+        for(String categoryId : entry.getCategoryIds()) {
+            size += 8 + JFeedlyCached.estimateSize(categoryId);
         }
 
-        return cachedUnreadCount.get(id).get();
+        return size;
+    }
+
+    private static long estimateSize(String string) {
+        return string == null ? 0 : 40 + 2 * string.length();
     }
 
     /**
@@ -169,11 +927,285 @@ public class JFeedlyCached extends JFeedly {
      */
     @Override
     public String exportOPML() {
-        if(cachedOPML.isEmpty() || cachedOPML.isExpired()) {
-            cachedOPML.set(super.exportOPML());
+        return this.getCached(cachedOPML, CachedResource.OPML, new Supplier<String>() {
+            @Override
+            public String get() {
+                return getConditional("/v3/opml", cachedOPML, new Function<String, String>() {
+                    @Override
+                    public String apply(String response) {
+                        return response;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Load a resource with a conditional request. If the server says it wasn't modified the cached value is
+     * returned (and renewed by getCached) without parsing anything.
+     */
+    private <T> T getConditional(String apiUrl, CachedType<T> cached, Function<String, T> parser) {
+        T current = cached.get();
+
+        ConditionalResponse response = this.sendConditionalGetRequest(apiUrl, current != null);
+
+        if(response.isNotModified()) {
+            return current;
+        }
+
+        return parser.apply(response.getBody());
+    }
+
+    private <T> T getCached(final CachedType<T> cached, final CachedResource resource, final Supplier<T> loader) {
+        final Supplier<T> reload = new Supplier<T>() {
+            @Override
+            public T get() {
+                T value = loader.get();
+
+                cached.set(value);
+
+                return value;
+            }
+        };
+
+        // read the value before the state, so a value which is replaced in between is never mistaken as valid
+        T value = cached.get();
+        int state = this.getState(cached, resource, null);
+
+        if(state == STALE) {
+            this.scheduleRefresh(resource.name(), reload);
+        }
+
+        if(state != EXPIRED && value != null) {
+            return value;
+        }
+
+        return loads.execute(resource.name(), new Supplier<T>() {
+            @Override
+            public T get() {
+                // another thread may have loaded it while we were waiting
+                T value = cached.get();
+
+                if(value != null && JFeedlyCached.this.getState(cached, resource, null) != EXPIRED) {
+                    return value;
+                }
+
+                return reload.get();
+            }
+        });
+    }
+
+    private <T> T getCached(final BoundedCache<CachedType<T>> cache, final CachedResource resource,
+                            final String id, final String key, final Supplier<T> loader) {
+        final Supplier<T> reload = new Supplier<T>() {
+            @Override
+            public T get() {
+                T value = loader.get();
+
+                if(value != null) {
+                    cache.put(key, new CachedType<T>(value));
+                }
+
+                return value;
+            }
+        };
+
+        CachedType<T> cached = cache.get(key);
+        T value = cached != null ? cached.get() : null;
+
+        int state = this.getState(cached, resource, id);
+
+        if(state == STALE) {
+            this.scheduleRefresh(resource.name() + ":" + key, reload);
+        }
+
+        if(state != EXPIRED && value != null) {
+            return value;
+        }
+
+        return loads.execute(resource.name() + ":" + key, new Supplier<T>() {
+            @Override
+            public T get() {
+                // another thread may have loaded it while we were waiting
+                CachedType<T> cached = cache.peek(key);
+                T value = cached != null ? cached.get() : null;
+
+                if(value != null && JFeedlyCached.this.getState(cached, resource, id) != EXPIRED) {
+                    return value;
+                }
+
+                return reload.get();
+            }
+        });
+    }
+
+    /**
+     * Returns FRESH if the value can be used, STALE if it can be used but should be reloaded in the background
+     * (only in refresh ahead mode) or EXPIRED if it has to be loaded now.
+     */
+    private int getState(CachedType<?> cached, CachedResource resource, String id) {
+        if(cached == null || cached.isEmpty()) {
+            return EXPIRED;
+        }
+
+        long refreshTime = this.getRefreshTime(resource, id);
+        long age = cached.getAge();
+
+        if(age <= refreshTime) {
+            // values which are still read are reloaded shortly before they expire
+            return refreshAhead && age > refreshTime * refreshAheadFactor ? STALE : FRESH;
+        }
+
+        return refreshAhead && age <= refreshTime + maximumStaleTime ? STALE : EXPIRED;
+    }
+
+    private void scheduleEntriesRefresh(final ArrayList<String> ids) {
+        if(ids.isEmpty()) {
+            return;
+        }
+
+        this.scheduleRefresh("entries:" + ids.get(0) + ":" + ids.size(), new Supplier<Entries>() {
+            @Override
+            public Entries get() {
+                Entries entries = JFeedlyCached.super.getEntriesByIds(ids);
+
+                cacheEntries(entries);
+
+                return entries;
+            }
+        });
+    }
+
+    private void scheduleRefresh(final String key, final Supplier<?> reload) {
+        if(!refreshing.add(key)) {
+            // already scheduled
+            return;
+        }
+
+        try {
+            this.getRefreshExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        loads.execute(key, reload);
+                    } catch(RuntimeException ex) {
+                        if(getVerbose()) {
+                            System.err.println("jfeedly: background refresh of " + key + " failed");
+                            ex.printStackTrace();
+                        }
+                    } finally {
+                        refreshing.remove(key);
+                    }
+                }
+            });
+        } catch(RejectedExecutionException ex) {
+            // the queue is full, the value will be refreshed on one of the next reads
+            refreshing.remove(key);
+        }
+    }
+
+    private synchronized ExecutorService getRefreshExecutor() {
+        if(refreshExecutor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(256), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "jfeedly-refresh-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+            executor.allowCoreThreadTimeOut(true);
+
+            refreshExecutor = executor;
+        }
+
+        return refreshExecutor;
+    }
+
+    /**
+     * Enable the refresh ahead mode: expired values are returned immediately and reloaded in the background,
+     * values which are read shortly before they expire are reloaded before they expire.
+     * @param refreshAhead true to enable (Default: false)
+     */
+    public void setRefreshAhead(boolean refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Set when a value will be reloaded in refresh ahead mode
+     * @param factor part of the refresh time after which a read triggers a reload (Default: 0.8)
+     */
+    public void setRefreshAheadFactor(double factor) {
+        this.refreshAheadFactor = factor;
+    }
+
+    /**
+     * Set how long after the refresh time an expired value may still be returned in refresh ahead mode, older
+     * values will be loaded before they are returned.
+     * @param maximumStaleTime time in milliseconds (Default: 1 hour)
+     */
+    public void setMaximumStaleTime(long maximumStaleTime) {
+        this.maximumStaleTime = maximumStaleTime;
+    }
+
+    /** Set the executor which reloads values in refresh ahead mode (Default: 2 threads, max. 256 waiting tasks) */
+    public synchronized void setRefreshExecutor(ExecutorService executor) {
+        this.refreshExecutor = executor;
+    }
+
+    /**
+     * Set how long values of one kind stay in the cache before they will be requested again. Resources without
+     * an own refresh time use the global CachedType.setRefreshTime(...) (Default: 10 minutes), except for the
+     * profile (Default: 1 hour) and the unread counts (Default: 1 minute).
+     * @param resource the kind of values
+     * @param refreshTime time in milliseconds
+     */
+    public void setRefreshTime(CachedResource resource, long refreshTime) {
+        refreshTimes.put(resource, refreshTime);
+    }
+
+    /** Returns the refresh time (in milliseconds) of the given kind of values */
+    public long getRefreshTime(CachedResource resource) {
+        Long refreshTime = refreshTimes.get(resource);
+
+        return refreshTime != null ? refreshTime : CachedType.getRefreshTime();
+    }
+
+    /**
+     * Set a refresh time for everything cached for one ID (the entry IDs of a stream or a feed),
+     * this overrides the refresh time of the resource.
+     * @param id May be a subscription, feed, tag or category id
+     * @param refreshTime time in milliseconds
+     */
+    public void setRefreshTimeFor(String id, long refreshTime) {
+        idRefreshTimes.put(id, refreshTime);
+    }
+
+    /** Remove the refresh time of an ID, the refresh time of the resource will be used again */
+    public void removeRefreshTimeFor(String id) {
+        idRefreshTimes.remove(id);
+    }
+
+    private long getRefreshTime(CachedResource resource, String id) {
+        if(id != null && !idRefreshTimes.isEmpty()) {
+            Long refreshTime = idRefreshTimes.get(id);
+
+            if(refreshTime != null) {
+                return refreshTime;
+            }
         }
 
-        return cachedOPML.get();
+        return this.getRefreshTime(resource);
+    }
+
+    private static String getStreamKey(String id, boolean unreadOnly, boolean showNewest, int number,
+                                       String continuation) {
+        return id + "|" + unreadOnly + "|" + showNewest + "|" + number + "|" + continuation;
     }
 
     /**
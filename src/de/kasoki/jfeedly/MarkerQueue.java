@@ -0,0 +1,329 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import de.kasoki.jfeedly.model.Entry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for read/unread and saved/unsaved markers. Markers are collected and sent with one
+ * "/v3/markers" request per action, when the queue is full, when the flush interval is over or when flush() is
+ * called. If an entry is marked several times before the queue is flushed only the last marker is sent.
+ * Failed batches are queued again and retried on the next flush. This class is thread-safe.
+ * @author Christopher Kaster
+ */
+public class MarkerQueue {
+
+    /** The markers which can be queued */
+    public static enum Action {
+        READ("markAsRead"),
+        UNREAD("keepUnread"),
+        SAVED("markAsSaved"),
+        UNSAVED("markAsUnsaved");
+
+        private String apiAction;
+
+        private Action(String apiAction) {
+            this.apiAction = apiAction;
+        }
+
+        /** Returns the name of this action in the feedly API */
+        public String getApiAction() {
+            return apiAction;
+        }
+    }
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL = 10000;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    private JFeedly handler;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    // entry id => last queued action, read state and saved state are independent of each other
+    private LinkedHashMap<String, Action> readMarkers = new LinkedHashMap<String, Action>();
+    private LinkedHashMap<String, Action> savedMarkers = new LinkedHashMap<String, Action>();
+    private HashMap<String, Integer> retries = new HashMap<String, Integer>();
+
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed = false;
+
+    private long markersSent = 0;
+    private long markersDropped = 0;
+    private long failedBatches = 0;
+
+    MarkerQueue(JFeedly handler) {
+        this.handler = handler;
+    }
+
+    /** Queue a read marker */
+    public void markAsRead(Entry entry) {
+        this.add(entry.getId(), Action.READ);
+    }
+
+    /** Queue an unread marker */
+    public void markAsUnread(Entry entry) {
+        this.add(entry.getId(), Action.UNREAD);
+    }
+
+    /** Queue a saved marker */
+    public void markAsSaved(Entry entry) {
+        this.add(entry.getId(), Action.SAVED);
+    }
+
+    /** Queue an unsaved marker */
+    public void markAsUnsaved(Entry entry) {
+        this.add(entry.getId(), Action.UNSAVED);
+    }
+
+    /**
+     * Queue a marker
+     * @param entryId the entry id
+     * @param action what should happen to the entry
+     */
+    public void add(String entryId, Action action) {
+        boolean full;
+
+        synchronized(this) {
+            if(closed) {
+                throw new IllegalStateException("jfeedly: the marker queue is closed");
+            }
+
+            LinkedHashMap<String, Action> markers = this.getMarkers(action);
+
+            // a new marker replaces an older one for the same entry
+            markers.remove(entryId);
+            markers.put(entryId, action);
+            retries.remove(entryId);
+
+            full = this.getNumberOfPendingMarkers() >= maxBatchSize;
+
+            this.scheduleFlush(full ? 0 : flushInterval);
+        }
+    }
+
+    /** Returns the number of markers which were not sent yet */
+    public synchronized int getNumberOfPendingMarkers() {
+        return readMarkers.size() + savedMarkers.size();
+    }
+
+    /** Returns the number of markers which were sent successfully */
+    public synchronized long getNumberOfSentMarkers() {
+        return markersSent;
+    }
+
+    /** Returns the number of markers which were dropped because they failed too often */
+    public synchronized long getNumberOfDroppedMarkers() {
+        return markersDropped;
+    }
+
+    /** Returns the number of batches which couldn't be sent */
+    public synchronized long getNumberOfFailedBatches() {
+        return failedBatches;
+    }
+
+    /** Set the number of markers which triggers a flush (Default: 500, max. 1'000 markers are sent per request) */
+    public synchronized void setMaxBatchSize(int maxBatchSize) {
+        if(maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize has to be at least 1");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /** Set the time in milliseconds after which queued markers will be sent (Default: 10 seconds) */
+    public synchronized void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /** Set how often a failed marker will be retried before it is dropped (Default: 5) */
+    public synchronized void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Send all queued markers now
+     * @return true if all markers were sent, false if some of them failed (they are queued again)
+     */
+    public boolean flush() {
+        // only one flush at a time, so markers can't overtake each other
+        synchronized(flushLock) {
+            LinkedHashMap<Action, ArrayList<String>> batches = new LinkedHashMap<Action, ArrayList<String>>();
+
+            synchronized(this) {
+                this.collect(readMarkers, batches);
+                this.collect(savedMarkers, batches);
+
+                readMarkers.clear();
+                savedMarkers.clear();
+            }
+
+            boolean success = true;
+
+            for(Map.Entry<Action, ArrayList<String>> batch : batches.entrySet()) {
+                if(handler.sendEntryMarkers(batch.getKey().getApiAction(), batch.getValue())) {
+                    synchronized(this) {
+                        markersSent += batch.getValue().size();
+
+                        for(String entryId : batch.getValue()) {
+                            retries.remove(entryId);
+                        }
+                    }
+                } else {
+                    success = false;
+
+                    this.requeue(batch.getKey(), batch.getValue());
+                }
+            }
+
+            synchronized(this) {
+                // markers which were queued while this flush was running
+                if(!closed && this.getNumberOfPendingMarkers() > 0) {
+                    this.scheduleFlush(flushInterval);
+                }
+            }
+
+            return success;
+        }
+    }
+
+    /** Send all queued markers and stop the background flushes */
+    public void close() {
+        synchronized(this) {
+            closed = true;
+
+            if(scheduler != null) {
+                scheduler.shutdown();
+            }
+        }
+
+        this.flush();
+    }
+
+    private void collect(LinkedHashMap<String, Action> markers, LinkedHashMap<Action, ArrayList<String>> batches) {
+        for(Map.Entry<String, Action> marker : markers.entrySet()) {
+            ArrayList<String> batch = batches.get(marker.getValue());
+
+            if(batch == null) {
+                batch = new ArrayList<String>();
+                batches.put(marker.getValue(), batch);
+            }
+
+            batch.add(marker.getKey());
+        }
+    }
+
+    private synchronized void requeue(Action action, ArrayList<String> entryIds) {
+        failedBatches++;
+
+        LinkedHashMap<String, Action> markers = this.getMarkers(action);
+
+        for(String entryId : entryIds) {
+            // a newer marker for this entry was queued in the meantime
+            if(markers.containsKey(entryId)) {
+                continue;
+            }
+
+            Integer count = retries.get(entryId);
+            int attempts = count == null ? 1 : count + 1;
+
+            if(attempts > maxRetries) {
+                retries.remove(entryId);
+                markersDropped++;
+
+                System.err.println("jfeedly: couldn't send marker " + action + " for " + entryId + ", giving up");
+            } else {
+                retries.put(entryId, attempts);
+                markers.put(entryId, action);
+            }
+        }
+
+        if(!closed && this.getNumberOfPendingMarkers() > 0) {
+            this.scheduleFlush(flushInterval);
+        }
+    }
+
+    private LinkedHashMap<String, Action> getMarkers(Action action) {
+        return action == Action.READ || action == Action.UNREAD ? readMarkers : savedMarkers;
+    }
+
+    private void scheduleFlush(long delay) {
+        if(scheduledFlush != null && !scheduledFlush.isDone()) {
+            if(delay > 0 || scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+                return;
+            }
+
+            // the queue is full, flush now instead of waiting for the interval
+            scheduledFlush.cancel(false);
+        }
+
+        ScheduledFlush task = new ScheduledFlush();
+
+        // the task can't start before the lock is released, so it always sees its future
+        task.future = this.getScheduler().schedule(task, delay, TimeUnit.MILLISECONDS);
+        scheduledFlush = task.future;
+    }
+
+    private class ScheduledFlush implements Runnable {
+        private ScheduledFuture<?> future;
+
+        @Override
+        public void run() {
+            synchronized(MarkerQueue.this) {
+                // markers which are added while this flush is running need a flush of their own
+                if(scheduledFlush == future) {
+                    scheduledFlush = null;
+                }
+            }
+
+            try {
+                MarkerQueue.this.flush();
+            } catch(RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private ScheduledExecutorService getScheduler() {
+        if(scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "jfeedly-markers");
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+        }
+
+        return scheduler;
+    }
+}
@@ -0,0 +1,361 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import de.kasoki.jfeedly.helper.CachedType;
+import de.kasoki.jfeedly.model.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps streams up to date without downloading them again. The first sync of a stream loads its newest entries,
+ * every following sync only asks for the entry IDs which are newer than the last sync and for the read state
+ * changes since then ("/v3/markers/reads"), and merges both into the entries it already has. If the handler is
+ * a JFeedlyCached the changes are merged into its caches as well. Streams which only keep the unread entries
+ * remember the last (maximum entries) entries they dropped because they were read, and add them again if they are
+ * marked as unread. Older entries which are marked as unread again only show up after a reset. This class is
+ * thread-safe.
+ * @author Christopher Kaster
+ */
+public class StreamSync {
+
+    public static final int DEFAULT_MAXIMUM_ENTRIES = 1000;
+    public static final long DEFAULT_OVERLAP = CachedType.ONE_MINUTE;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static class StreamState {
+        private boolean unreadOnly;
+        private long newerThan;
+        // entry id => entry, newest first
+        private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+        // entries which were dropped because they were read (unread only), in case they are marked as unread again
+        private LinkedHashMap<String, Entry> read = new LinkedHashMap<String, Entry>();
+
+        StreamState(boolean unreadOnly) {
+            this.unreadOnly = unreadOnly;
+        }
+    }
+
+    private JFeedly handler;
+    private HashMap<String, StreamState> streams = new HashMap<String, StreamState>();
+    private long markersNewerThan = 0;
+
+    private int maximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+    private long overlap = DEFAULT_OVERLAP;
+
+    private long syncs = 0;
+    private long newEntries = 0;
+    private long readStateChanges = 0;
+
+    private StreamSync(JFeedly handler) {
+        this.handler = handler;
+    }
+
+    /** Sync the unread entries of a stream (see sync(String, boolean)) */
+    public Entries sync(String streamId) {
+        return this.sync(streamId, true);
+    }
+
+    /**
+     * Bring a stream up to date. The first call loads the newest entries, later calls only load what changed.
+     * @param streamId May be a subscription, feed, tag or category id
+     * @param unreadOnly Only keep the unread entries
+     * @return The entries of the stream, newest first
+     */
+    public synchronized Entries sync(String streamId, boolean unreadOnly) {
+        StreamState state = streams.get(streamId);
+
+        if(state == null || state.unreadOnly != unreadOnly) {
+            state = this.load(streamId, unreadOnly);
+
+            streams.put(streamId, state);
+        } else {
+            this.syncReadOperations();
+            this.loadNewEntries(streamId, state);
+        }
+
+        syncs++;
+
+        return this.getEntries(state);
+    }
+
+    /** Fetch the read state changes since the last sync and apply them to all synced streams */
+    public synchronized void syncReadOperations() {
+        long now = System.currentTimeMillis();
+
+        if(markersNewerThan == 0) {
+            // nothing was loaded yet, so there is nothing to update
+            markersNewerThan = now - overlap;
+            return;
+        }
+
+        ReadOperations operations = handler.getReadOperations(markersNewerThan);
+
+        for(StreamState state : streams.values()) {
+            this.apply(operations, state);
+        }
+
+        if(handler instanceof JFeedlyCached) {
+            ((JFeedlyCached) handler).applyReadOperations(operations);
+        }
+
+        markersNewerThan = now - overlap;
+    }
+
+    /** Returns the synced entries of a stream without asking the server, null if it was never synced */
+    public synchronized Entries getEntries(String streamId) {
+        StreamState state = streams.get(streamId);
+
+        return state != null ? this.getEntries(state) : null;
+    }
+
+    /** Returns the time (in milliseconds) after which new entries of a stream are requested, -1 if never synced */
+    public synchronized long getHighWaterMark(String streamId) {
+        StreamState state = streams.get(streamId);
+
+        return state != null ? state.newerThan : -1;
+    }
+
+    /** Forget a stream, the next sync loads it again */
+    public synchronized void reset(String streamId) {
+        streams.remove(streamId);
+    }
+
+    /** Forget all streams and read states */
+    public synchronized void reset() {
+        streams.clear();
+        markersNewerThan = 0;
+    }
+
+    /** Set the maximum number of entries which are kept per stream, older ones are dropped (Default: 1'000) */
+    public synchronized void setMaximumEntries(int maximumEntries) {
+        this.maximumEntries = maximumEntries;
+    }
+
+    /**
+     * Set how far (in milliseconds) the next sync looks back behind the last one, so entries aren't missed
+     * because of different clocks on the client and the server (Default: 1 minute)
+     */
+    public synchronized void setOverlap(long overlap) {
+        this.overlap = overlap;
+    }
+
+    /** Returns the number of syncs */
+    public synchronized long getNumberOfSyncs() {
+        return syncs;
+    }
+
+    /** Returns the number of entries which were added by incremental syncs */
+    public synchronized long getNumberOfNewEntries() {
+        return newEntries;
+    }
+
+    /** Returns the number of entries whose read state was changed by incremental syncs */
+    public synchronized long getNumberOfReadStateChanges() {
+        return readStateChanges;
+    }
+
+    private StreamState load(String streamId, boolean unreadOnly) {
+        long now = System.currentTimeMillis();
+
+        StreamState state = new StreamState(unreadOnly);
+
+        ArrayList<String> ids = this.getIds(streamId, unreadOnly, 0, null);
+
+        for(Entry entry : handler.getEntriesByIds(ids)) {
+            state.entries.put(entry.getId(), entry);
+        }
+
+        state.newerThan = now - overlap;
+
+        if(markersNewerThan == 0) {
+            markersNewerThan = now - overlap;
+        }
+
+        return state;
+    }
+
+    private void loadNewEntries(String streamId, StreamState state) {
+        long now = System.currentTimeMillis();
+
+        ArrayList<String> ids = this.getIds(streamId, state.unreadOnly, state.newerThan, state.entries.keySet());
+
+        if(!ids.isEmpty()) {
+            LinkedHashMap<String, Entry> merged = new LinkedHashMap<String, Entry>();
+
+            for(Entry entry : handler.getEntriesByIds(ids)) {
+                merged.put(entry.getId(), entry);
+            }
+
+            newEntries += merged.size();
+
+            state.read.keySet().removeAll(merged.keySet());
+
+            merged.putAll(state.entries);
+            state.entries = merged;
+
+            this.trim(state);
+
+            if(handler instanceof JFeedlyCached) {
+                ((JFeedlyCached) handler).invalidateStream(streamId);
+            }
+        }
+
+        state.newerThan = now - overlap;
+    }
+
+    /** Returns the IDs of a stream (newest first) which are not known yet */
+    private ArrayList<String> getIds(String streamId, boolean unreadOnly, long newerThan, Set<String> known) {
+        ArrayList<String> ids = new ArrayList<String>();
+        HashSet<String> seen = new HashSet<String>();
+        String continuation = null;
+
+        do {
+            int count = Math.min(PAGE_SIZE, maximumEntries - ids.size());
+
+            EntryIds page = handler.getNewEntryIds(streamId, unreadOnly, newerThan, count, continuation);
+
+            for(String id : page.getIds()) {
+                if((known == null || !known.contains(id)) && seen.add(id)) {
+                    ids.add(id);
+                }
+            }
+
+            continuation = page.getContinuation();
+        } while(continuation != null && ids.size() < maximumEntries);
+
+        return ids;
+    }
+
+    private void apply(ReadOperations operations, StreamState state) {
+        Iterator<Map.Entry<String, Entry>> it = state.entries.entrySet().iterator();
+
+        while(it.hasNext()) {
+            Map.Entry<String, Entry> item = it.next();
+            Entry entry = item.getValue();
+
+            boolean unread = operations.isUnread(entry);
+
+            if(unread == entry.isUnread()) {
+                continue;
+            }
+
+            readStateChanges++;
+
+            if(!unread && state.unreadOnly) {
+                it.remove();
+
+                this.remember(state, entry.withUnread(false));
+            } else {
+                item.setValue(entry.withUnread(unread));
+            }
+        }
+
+        if(!state.unreadOnly || state.read.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Entry> unread = new ArrayList<Entry>();
+
+        for(String id : operations.getUnreadEntryIds()) {
+            Entry entry = state.read.remove(id);
+
+            if(entry != null && !state.entries.containsKey(id)) {
+                unread.add(entry.withUnread(true));
+            }
+        }
+
+        if(!unread.isEmpty()) {
+            readStateChanges += unread.size();
+
+            this.insert(state, unread);
+        }
+    }
+
+    /** Remember an entry which was dropped because it was read, only the last (maximum entries) are kept */
+    private void remember(StreamState state, Entry entry) {
+        state.read.put(entry.getId(), entry);
+
+        Iterator<String> it = state.read.keySet().iterator();
+
+        while(state.read.size() > maximumEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /** Insert entries by their published date, without changing the order of the entries which are already there */
+    private void insert(StreamState state, ArrayList<Entry> entries) {
+        Collections.sort(entries, Collections.reverseOrder());
+
+        LinkedHashMap<String, Entry> merged = new LinkedHashMap<String, Entry>();
+        int position = 0;
+
+        for(Entry entry : state.entries.values()) {
+            while(position < entries.size() && entries.get(position).compareTo(entry) > 0) {
+                Entry inserted = entries.get(position++);
+
+                merged.put(inserted.getId(), inserted);
+            }
+
+            merged.put(entry.getId(), entry);
+        }
+
+        while(position < entries.size()) {
+            Entry inserted = entries.get(position++);
+
+            merged.put(inserted.getId(), inserted);
+        }
+
+        state.entries = merged;
+
+        this.trim(state);
+    }
+
+    private void trim(StreamState state) {
+        Iterator<String> it = state.entries.keySet().iterator();
+        int position = 0;
+
+        while(it.hasNext()) {
+            it.next();
+
+            if(position++ >= maximumEntries) {
+                it.remove();
+            }
+        }
+    }
+
+    private Entries getEntries(StreamState state) {
+        return Entries.fromArrayList(new ArrayList<Entry>(state.entries.values()));
+    }
+
+    /**
+     * Create a sync for the given handler
+     * @param handler An (authenticated) jfeedly handler, may also be a JFeedlyCached
+     * @return A new stream sync
+     */
+    public static StreamSync fromHandler(JFeedly handler) {
+        return new StreamSync(handler);
+    }
+}
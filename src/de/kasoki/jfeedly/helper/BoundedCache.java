@@ -0,0 +1,332 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache with a maximum weight which evicts values with the W-TinyLFU policy: new values enter a
+ * small LRU window, values leaving the window are only admitted to the main cache (a segmented LRU) if they were
+ * requested more often than the value they would replace.
+ * @author Christopher Kaster
+ */
+public class BoundedCache<V> {
+
+    /** Calculates the weight of a value, e.g. its estimated size in bytes */
+    public static interface Weigher<V> {
+        long weigh(String key, V value);
+    }
+
+    /** Decides if a value should be removed by removeIf(...) */
+    public static interface Condition<V> {
+        boolean matches(String key, V value);
+    }
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static class Node<V> {
+        private String key;
+        private V value;
+        private long weight;
+        private int queue;
+
+        Node(String key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.queue = WINDOW;
+        }
+    }
+
+    private Weigher<V> weigher;
+    private long maximumWeight;
+    private long windowMaximum;
+    private long protectedMaximum;
+
+    private HashMap<String, Node<V>> data = new HashMap<String, Node<V>>();
+    private ArrayList<LinkedHashMap<String, Node<V>>> queues = new ArrayList<LinkedHashMap<String, Node<V>>>();
+    private long[] queueWeights = new long[3];
+    private FrequencySketch sketch;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long evictedWeight = 0;
+    private long rejections = 0;
+
+    /**
+     * Create a new cache
+     * @param maximumWeight the maximum sum of all weights
+     * @param weigher calculates the weight of one value
+     * @param expectedEntries roughly how many values the cache will hold (used to size the frequency sketch)
+     */
+    public BoundedCache(long maximumWeight, Weigher<V> weigher, long expectedEntries) {
+        if(maximumWeight < 1) {
+            throw new IllegalArgumentException("maximumWeight has to be at least 1");
+        }
+
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+
+        // 1% window, the main cache is split into 20% probation and 80% protected
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 8 / 10;
+
+        this.sketch = new FrequencySketch(expectedEntries);
+
+        for(int i = 0; i < 3; i++) {
+            queues.add(new LinkedHashMap<String, Node<V>>(16, 0.75f, true));
+        }
+    }
+
+    /** Create a cache which holds at most the given number of values */
+    public static <V> BoundedCache<V> withMaximumSize(long maximumSize) {
+        return new BoundedCache<V>(maximumSize, new Weigher<V>() {
+            @Override
+            public long weigh(String key, V value) {
+                return 1;
+            }
+        }, maximumSize);
+    }
+
+    /** Returns the value for the given key or null if it is not cached */
+    public synchronized V get(String key) {
+        sketch.increment(key);
+
+        Node<V> node = data.get(key);
+
+        if(node == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        this.onAccess(node);
+
+        return node.value;
+    }
+
+    /** Returns the value for the given key without counting it as access */
+    public synchronized V peek(String key) {
+        Node<V> node = data.get(key);
+
+        return node != null ? node.value : null;
+    }
+
+    /** Is there a value for the given key? */
+    public synchronized boolean containsKey(String key) {
+        return data.containsKey(key);
+    }
+
+    /** Add or replace a value */
+    public synchronized void put(String key, V value) {
+        long weight = weigher.weigh(key, value);
+
+        Node<V> node = data.get(key);
+
+        if(weight > maximumWeight) {
+            // this value alone would exceed the cache
+            if(node != null) {
+                this.removeNode(node);
+            }
+
+            rejections++;
+            return;
+        }
+
+        sketch.increment(key);
+
+        if(node != null) {
+            queueWeights[node.queue] += weight - node.weight;
+            node.value = value;
+            node.weight = weight;
+
+            this.onAccess(node);
+        } else {
+            node = new Node<V>(key, value, weight);
+
+            data.put(key, node);
+            queues.get(WINDOW).put(key, node);
+            queueWeights[WINDOW] += weight;
+        }
+
+        this.evict();
+    }
+
+    /** Remove a value */
+    public synchronized V remove(String key) {
+        Node<V> node = data.get(key);
+
+        if(node == null) {
+            return null;
+        }
+
+        this.removeNode(node);
+
+        return node.value;
+    }
+
+    /**
+     * Remove all values which match the condition (e.g. expired ones)
+     * @return The number of removed values
+     */
+    public synchronized int removeIf(Condition<V> condition) {
+        ArrayList<Node<V>> matching = new ArrayList<Node<V>>();
+
+        for(Node<V> node : data.values()) {
+            if(condition.matches(node.key, node.value)) {
+                matching.add(node);
+            }
+        }
+
+        for(Node<V> node : matching) {
+            this.removeNode(node);
+        }
+
+        return matching.size();
+    }
+
+    /** Remove all values */
+    public synchronized void clear() {
+        data.clear();
+
+        for(int i = 0; i < 3; i++) {
+            queues.get(i).clear();
+            queueWeights[i] = 0;
+        }
+    }
+
+    /** Returns a snapshot of all cached values (doesn't count as access) */
+    public synchronized ArrayList<V> values() {
+        ArrayList<V> values = new ArrayList<V>(data.size());
+
+        for(Node<V> node : data.values()) {
+            values.add(node.value);
+        }
+
+        return values;
+    }
+
+    /** Returns the number of cached values */
+    public synchronized int size() {
+        return data.size();
+    }
+
+    /** Returns the sum of the weights of all cached values */
+    public synchronized long weight() {
+        return queueWeights[WINDOW] + queueWeights[PROBATION] + queueWeights[PROTECTED];
+    }
+
+    /** Returns the maximum weight of this cache */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /** Returns the current statistics of this cache */
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, evictions, evictedWeight, rejections, data.size(), this.weight(),
+                maximumWeight);
+    }
+
+    private void onAccess(Node<V> node) {
+        if(node.queue == PROBATION) {
+            // a second access promotes a value to the protected segment
+            this.moveTo(node, PROTECTED);
+
+            while(queueWeights[PROTECTED] > protectedMaximum) {
+                this.moveTo(this.eldest(PROTECTED), PROBATION);
+            }
+        } else {
+            // LinkedHashMap in access order moves the key to the end
+            queues.get(node.queue).get(node.key);
+        }
+    }
+
+    private void evict() {
+        long mainMaximum = maximumWeight - windowMaximum;
+
+        while(queueWeights[WINDOW] > windowMaximum) {
+            Node<V> candidate = this.eldest(WINDOW);
+
+            this.moveTo(candidate, PROBATION);
+
+            // the candidate has to be more popular than the values it replaces
+            while(data.containsKey(candidate.key) &&
+                    queueWeights[PROBATION] + queueWeights[PROTECTED] > mainMaximum) {
+                Node<V> victim = this.eldest(PROBATION);
+
+                if(victim == candidate || victim == null) {
+                    victim = this.eldest(PROTECTED);
+                }
+
+                if(victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    this.evictNode(candidate);
+                } else {
+                    this.evictNode(victim);
+                }
+            }
+        }
+
+        while(this.weight() > maximumWeight) {
+            Node<V> victim = this.eldest(PROBATION);
+
+            if(victim == null) {
+                victim = this.eldest(PROTECTED);
+            }
+
+            if(victim == null) {
+                victim = this.eldest(WINDOW);
+            }
+
+            this.evictNode(victim);
+        }
+    }
+
+    private Node<V> eldest(int queue) {
+        Iterator<Map.Entry<String, Node<V>>> it = queues.get(queue).entrySet().iterator();
+
+        return it.hasNext() ? it.next().getValue() : null;
+    }
+
+    private void moveTo(Node<V> node, int queue) {
+        queues.get(node.queue).remove(node.key);
+        queueWeights[node.queue] -= node.weight;
+
+        node.queue = queue;
+
+        queues.get(queue).put(node.key, node);
+        queueWeights[queue] += node.weight;
+    }
+
+    private void evictNode(Node<V> node) {
+        this.removeNode(node);
+
+        evictions++;
+        evictedWeight += node.weight;
+    }
+
+    private void removeNode(Node<V> node) {
+        data.remove(node.key);
+        queues.get(node.queue).remove(node.key);
+        queueWeights[node.queue] -= node.weight;
+    }
+}
@@ -0,0 +1,161 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A small pool of byte buffers which are used to read response bodies, so every response doesn't allocate
+ * (and grow) its own buffer. This class is thread-safe.
+ * @author Christopher Kaster
+ */
+class BufferPool {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    // bigger buffers are not kept, so one huge response doesn't pin its memory
+    private static final int MAXIMUM_POOLED_SIZE = 1024 * 1024;
+
+    private ArrayBlockingQueue<byte[]> buffers;
+
+    BufferPool(int maximumBuffers) {
+        this.buffers = new ArrayBlockingQueue<byte[]>(maximumBuffers);
+    }
+
+    /** Take a buffer from the pool (or create a new one), it has at least BUFFER_SIZE bytes */
+    byte[] acquire() {
+        byte[] buffer = buffers.poll();
+
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    /** Give a buffer back, it must not be used afterwards */
+    void release(byte[] buffer) {
+        if(buffer.length <= MAXIMUM_POOLED_SIZE) {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Read a stream until its end and decode it
+     * @param in the stream, it will be closed
+     * @param charset the charset of the stream
+     * @return the decoded content
+     */
+    String readFully(InputStream in, Charset charset) throws IOException {
+        PooledReader reader = this.read(in, charset);
+
+        try {
+            return new String(reader.buffer, 0, reader.length, charset);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read a stream until its end into a pooled buffer, so the connection can be reused right away. The returned
+     * reader decodes the buffer while it is read and gives it back to the pool when it is closed, the content is
+     * never copied into a String.
+     * @param in the stream, it will be closed
+     * @param charset the charset of the stream
+     * @return a reader for the decoded content, it has to be closed by the caller
+     */
+    Reader openReader(InputStream in, Charset charset) throws IOException {
+        return this.read(in, charset);
+    }
+
+    private PooledReader read(InputStream in, Charset charset) throws IOException {
+        byte[] buffer = this.acquire();
+        int length = 0;
+
+        try {
+            int n;
+
+            while((n = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += n;
+
+                if(length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        } catch(IOException ex) {
+            this.release(buffer);
+
+            throw ex;
+        } finally {
+            in.close();
+        }
+
+        return new PooledReader(buffer, length, charset);
+    }
+
+    /**
+     * Read a stream until its end and throw the content away
+     * @param in the stream, it will be closed
+     */
+    void discard(InputStream in) throws IOException {
+        byte[] buffer = this.acquire();
+
+        try {
+            while(in.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            in.close();
+
+            this.release(buffer);
+        }
+    }
+
+    /** Decodes the content of a pooled buffer, the buffer goes back to the pool when the reader is closed */
+    private class PooledReader extends Reader {
+        private byte[] buffer;
+        private int length;
+        private InputStreamReader decoder;
+
+        PooledReader(byte[] buffer, int length, Charset charset) {
+            this.buffer = buffer;
+            this.length = length;
+            this.decoder = new InputStreamReader(new ByteArrayInputStream(buffer, 0, length), charset);
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int count) throws IOException {
+            if(buffer == null) {
+                throw new IOException("jfeedly: reader is closed");
+            }
+
+            return decoder.read(chars, offset, count);
+        }
+
+        @Override
+        public void close() {
+            if(buffer != null) {
+                BufferPool.this.release(buffer);
+
+                buffer = null;
+                decoder = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+/**
+ * A snapshot of the statistics of a BoundedCache
+ * @author Christopher Kaster
+ */
+public class CacheStatistics {
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long evictedWeight;
+    private long rejections;
+    private int size;
+    private long weight;
+    private long maximumWeight;
+
+    CacheStatistics(long hits, long misses, long evictions, long evictedWeight, long rejections, int size,
+                    long weight, long maximumWeight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.evictedWeight = evictedWeight;
+        this.rejections = rejections;
+        this.size = size;
+        this.weight = weight;
+        this.maximumWeight = maximumWeight;
+    }
+
+    /** Returns how often a key was found in the cache */
+    public long getHits() {
+        return hits;
+    }
+
+    /** Returns how often a key was not found in the cache */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Returns the ratio of hits to all lookups (0 if there were no lookups) */
+    public double getHitRate() {
+        long requests = hits + misses;
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /** Returns the number of values which were evicted to stay within the maximum weight */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** Returns the sum of the weights of all evicted values */
+    public long getEvictedWeight() {
+        return evictedWeight;
+    }
+
+    /** Returns the number of values which were not cached because they alone exceed the maximum weight */
+    public long getRejections() {
+        return rejections;
+    }
+
+    /** Returns the number of values in the cache */
+    public int getSize() {
+        return size;
+    }
+
+    /** Returns the current weight of the cache */
+    public long getWeight() {
+        return weight;
+    }
+
+    /** Returns the maximum weight of the cache */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions +
+                ", evictedWeight=" + evictedWeight + ", rejections=" + rejections + ", size=" + size +
+                ", weight=" + weight + "/" + maximumWeight + "]";
+    }
+}
@@ -1,14 +1,20 @@
 package de.kasoki.jfeedly.helper;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 public class CachedType<T> {
     private T type;
-    private Date creationDate;
+
+    /** monotonic creation time (System.nanoTime), not affected by changes of the system clock */
+    private long creationTime;
+
+    /** set by expire(), the value is kept but has to be loaded again */
+    private boolean expired = false;
 
     public static final long ONE_MINUTE = 60000;
 
-    private static long refreshTime = 10 * ONE_MINUTE;
+    private static volatile long refreshTime = 10 * ONE_MINUTE;
 
     public CachedType() {
         this(null);
@@ -18,30 +24,68 @@ public class CachedType<T> {
         this.set(type);
     }
 
-    public void set(T type) {
+    /** Create a value which was already loaded at the given time, e.g. a value from a persistent cache */
+    public CachedType(T type, Date creationDate) {
+        this.set(type);
+
+        long age = Math.max(System.currentTimeMillis() - creationDate.getTime(), 0);
+
+        this.creationTime -= TimeUnit.MILLISECONDS.toNanos(age);
+    }
+
+    public synchronized void set(T type) {
         this.type = type;
-        this.creationDate = new Date();
+        this.creationTime = System.nanoTime();
+        this.expired = false;
+    }
+
+    /** Mark the value as expired without removing it, readers which already decided to use it still get it */
+    public synchronized void expire() {
+        this.expired = true;
     }
 
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return this.type == null;
     }
 
-    public Date getRefreshDate() {
-        return new Date(creationDate.getTime() + refreshTime);
+    public synchronized Date getRefreshDate() {
+        return this.getRefreshDate(refreshTime);
     }
 
+    public synchronized Date getRefreshDate(long refreshTime) {
+        return new Date(System.currentTimeMillis() + refreshTime - this.getAge());
+    }
+
+    /** Returns the time in milliseconds since the value was set */
+    public synchronized long getAge() {
+        if(this.expired) {
+            return Long.MAX_VALUE;
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.creationTime);
+    }
+
+    /** Is the value older than the global refresh time? */
     public boolean isExpired() {
-        Date currentTime = new Date();
+        return this.isExpired(refreshTime);
+    }
 
-        return currentTime.after(this.getRefreshDate());
+    /** Is the value older than the given refresh time (in milliseconds)? */
+    public synchronized boolean isExpired(long refreshTime) {
+        return this.expired || System.nanoTime() - this.creationTime > TimeUnit.MILLISECONDS.toNanos(refreshTime);
     }
 
-    public T get() {
+    public synchronized T get() {
         return this.type;
     }
 
+    /** Set the global refresh time, it is used for all values which have no refresh time of their own */
     public static void setRefreshTime(long refreshTime) {
         CachedType.refreshTime = refreshTime;
     }
+
+    /** Returns the global refresh time in milliseconds */
+    public static long getRefreshTime() {
+        return CachedType.refreshTime;
+    }
 }
@@ -0,0 +1,41 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+/**
+ * The result of a conditional GET request: either the new response body or "not modified"
+ * @author Christopher Kaster
+ */
+public class ConditionalResponse {
+
+    private boolean notModified;
+    private String body;
+
+    ConditionalResponse(boolean notModified, String body) {
+        this.notModified = notModified;
+        this.body = body;
+    }
+
+    /** Did the server answer with "304 Not Modified"? Then the previous response is still valid. */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /** Returns the response body, null if the resource was not modified */
+    public String getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,381 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of persistent connections. Every host (scheme + host + port) gets its own set of connections,
+ * idle connections will be closed after the idle timeout. The pool uses a ReentrantLock instead of synchronized,
+ * so virtual threads waiting for a connection don't pin their carrier thread.
+ * @author Christopher Kaster
+ */
+public class ConnectionPool {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 30000;
+
+    private int maxConnectionsPerHost;
+    private long idleTimeout;
+    private long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+    private int connectTimeout = 10000;
+    private int readTimeout = 60000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private HashMap<String, HostConnections> hosts = new HashMap<String, HostConnections>();
+    private Timer evictionTimer;
+    private boolean shutdown = false;
+
+    private long connectionsCreated = 0;
+    private long connectionsReused = 0;
+    private long connectionsEvicted = 0;
+    private long connectionsClosed = 0;
+    private long waits = 0;
+
+    private static class HostConnections {
+        private ArrayDeque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+        private int leased = 0;
+    }
+
+    /** Create a new pool with the default limits */
+    public ConnectionPool() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Create a new pool
+     * @param maxConnectionsPerHost Maximum number of connections (idle + in use) to one host
+     * @param idleTimeout Time in milliseconds after an idle connection will be closed
+     */
+    public ConnectionPool(int maxConnectionsPerHost, long idleTimeout) {
+        if(maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost has to be at least 1");
+        }
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /** Set how long (in milliseconds) a request waits for a free connection before it fails */
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /** Set the connect timeout in milliseconds */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /** Set the read timeout in milliseconds */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /** Returns the maximum number of connections per host */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /** Returns the idle timeout in milliseconds */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Lease a connection to the given host. Idle connections will be reused, if there is none a new connection
+     * will be opened. Blocks if the host already reached the maximum number of connections.
+     */
+    PooledConnection acquire(String scheme, String host, int port) throws IOException {
+        String route = scheme + "://" + host + ":" + port;
+
+        lock.lock();
+
+        try {
+            if(shutdown) {
+                throw new IOException("jfeedly: connection pool is shut down");
+            }
+
+            this.evictIdleConnections(System.nanoTime());
+
+            HostConnections connections = this.getHostConnections(route);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+            boolean waited = false;
+
+            while(true) {
+                PooledConnection connection = connections.idle.pollFirst();
+
+                if(connection != null) {
+                    if(!connection.isOpen()) {
+                        connectionsClosed++;
+                        continue;
+                    }
+
+                    connections.leased++;
+                    connectionsReused++;
+                    connection.onLeased();
+
+                    return connection;
+                }
+
+                if(connections.leased < maxConnectionsPerHost) {
+                    // reserve a slot, the socket will be opened outside of the lock
+                    connections.leased++;
+                    break;
+                }
+
+                long remaining = deadline - System.nanoTime();
+
+                if(remaining <= 0) {
+                    throw new IOException("jfeedly: timeout while waiting for a connection to " + route);
+                }
+
+                if(!waited) {
+                    waited = true;
+                    waits++;
+                }
+
+                try {
+                    released.awaitNanos(remaining);
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("jfeedly: interrupted while waiting for a connection to " + route);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            PooledConnection connection = new PooledConnection(route, this.openSocket(scheme, host, port));
+
+            connection.onLeased();
+
+            lock.lock();
+
+            try {
+                connectionsCreated++;
+            } finally {
+                lock.unlock();
+            }
+
+            return connection;
+        } catch(IOException ex) {
+            lock.lock();
+
+            try {
+                this.getHostConnections(route).leased--;
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Give a connection back to the pool
+     * @param connection the connection
+     * @param reusable false if the connection is in an unknown state and has to be closed
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        lock.lock();
+
+        try {
+            HostConnections connections = this.getHostConnections(connection.getRoute());
+
+            connections.leased--;
+
+            if(reusable && !shutdown && connection.isOpen()) {
+                connection.onReleased();
+                connections.idle.addFirst(connection);
+
+                this.startEvictionTimer();
+            } else {
+                connection.close();
+                connectionsClosed++;
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Close all connections which were idle for longer than the idle timeout */
+    public void evictIdleConnections() {
+        lock.lock();
+
+        try {
+            this.evictIdleConnections(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIdleConnections(long now) {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+
+        for(HostConnections connections : hosts.values()) {
+            Iterator<PooledConnection> it = connections.idle.iterator();
+
+            while(it.hasNext()) {
+                PooledConnection connection = it.next();
+
+                if(now - connection.getIdleSince() > timeout || !connection.isOpen()) {
+                    it.remove();
+                    connection.close();
+                    connectionsEvicted++;
+                }
+            }
+        }
+    }
+
+    /** Returns the current statistics of this pool */
+    public PoolStatistics getStatistics() {
+        lock.lock();
+
+        try {
+            int leased = 0;
+            int idle = 0;
+
+            for(HostConnections connections : hosts.values()) {
+                leased += connections.leased;
+                idle += connections.idle.size();
+            }
+
+            return new PoolStatistics(connectionsCreated, connectionsReused, connectionsEvicted, connectionsClosed,
+                    waits, leased, idle);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Close all idle connections, connections in use will be closed when they are released */
+    public void shutdown() {
+        lock.lock();
+
+        try {
+            shutdown = true;
+
+            for(HostConnections connections : hosts.values()) {
+                for(PooledConnection connection : connections.idle) {
+                    connection.close();
+                    connectionsClosed++;
+                }
+
+                connections.idle.clear();
+            }
+
+            if(evictionTimer != null) {
+                evictionTimer.cancel();
+                evictionTimer = null;
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private HostConnections getHostConnections(String route) {
+        HostConnections connections = hosts.get(route);
+
+        if(connections == null) {
+            connections = new HostConnections();
+            hosts.put(route, connections);
+        }
+
+        return connections;
+    }
+
+    private void startEvictionTimer() {
+        if(evictionTimer != null) {
+            return;
+        }
+
+        long period = Math.max(idleTimeout / 2, 1000);
+
+        evictionTimer = new Timer("jfeedly-connection-eviction", true);
+
+        evictionTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                ConnectionPool.this.evictIdleConnections();
+            }
+        }, period, period);
+    }
+
+    private Socket openSocket(String scheme, String host, int port) throws IOException {
+        Socket socket = new Socket();
+
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(readTimeout);
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+
+            if(scheme.equals("https")) {
+                SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+
+                sslSocket.startHandshake();
+
+                return sslSocket;
+            }
+
+            return socket;
+        } catch(IOException ex) {
+            // a failed connect or handshake would leak the plain socket otherwise
+            closeQuietly(socket);
+
+            throw ex;
+        } catch(RuntimeException ex) {
+            closeQuietly(socket);
+
+            throw ex;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch(IOException ex) {
+            // nothing left to do
+        }
+    }
+}
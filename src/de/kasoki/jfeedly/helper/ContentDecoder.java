@@ -0,0 +1,165 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes compressed ("Content-Encoding: gzip" or "deflate") response bodies while they are being read and
+ * counts the bytes before and after decoding
+ * @author Christopher Kaster
+ */
+class ContentDecoder {
+
+    /** The value of the "Accept-Encoding" header */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private AtomicLong responses = new AtomicLong();
+    private AtomicLong compressedResponses = new AtomicLong();
+    private AtomicLong transferredBytes = new AtomicLong();
+    private AtomicLong decodedBytes = new AtomicLong();
+
+    /**
+     * Wrap a response body, so it is decoded on the fly
+     * @param body the body as received from the server
+     * @param contentEncoding the "Content-Encoding" header, may be null
+     * @return the decoded body
+     */
+    InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        responses.incrementAndGet();
+
+        InputStream transferred = new CountingInputStream(body, transferredBytes);
+
+        String encoding = contentEncoding != null ? contentEncoding.trim().toLowerCase() : "identity";
+
+        if(encoding.equals("identity") || encoding.isEmpty()) {
+            return new CountingInputStream(transferred, decodedBytes);
+        }
+
+        BufferedInputStream in = new BufferedInputStream(transferred, BUFFER_SIZE);
+
+        // an empty body (e.g. "304 Not Modified") has no compression header
+        in.mark(2);
+
+        int first = in.read();
+        int second = in.read();
+
+        in.reset();
+
+        if(first == -1) {
+            return in;
+        }
+
+        InputStream decoded;
+
+        if(encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            decoded = new GZIPInputStream(in, BUFFER_SIZE);
+        } else if(encoding.equals("deflate")) {
+            // "deflate" should be zlib wrapped, but some servers send raw deflate data
+            boolean zlib = (first & 0x0F) == 8 && second != -1 && ((first << 8) | second) % 31 == 0;
+
+            decoded = new DeflateInputStream(in, new Inflater(!zlib));
+        } else {
+            System.err.println("jfeedly: Unknown Content-Encoding " + contentEncoding);
+            return new CountingInputStream(in, decodedBytes);
+        }
+
+        compressedResponses.incrementAndGet();
+
+        return new CountingInputStream(decoded, decodedBytes);
+    }
+
+    /** Returns a snapshot of the counters */
+    TransferStatistics getStatistics() {
+        return new TransferStatistics(responses.get(), compressedResponses.get(), transferredBytes.get(),
+                decodedBytes.get());
+    }
+
+    /** Ends the inflater on close, InflaterInputStream only does that for its own inflater */
+    private static class DeflateInputStream extends InflaterInputStream {
+
+        private Inflater inflater;
+
+        DeflateInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+            this.inflater = inflater;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if(b != -1) {
+                counter.incrementAndGet();
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+
+            if(n > 0) {
+                counter.addAndGet(n);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+
+            counter.addAndGet(skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,715 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent key/value cache for Strings. Values are appended to a segment file ("name.seg"), the position of
+ * the newest value of every key is kept in memory and written to an index file ("name.idx") on flush() and
+ * close(). Every record has a checksum: after a crash the records behind the last written index are read again
+ * and a torn record at the end of the segment is cut off. Values older than the maximum age are ignored and
+ * removed by the next compaction, which rewrites the segment when most of it is garbage. This class is
+ * thread-safe.
+ * @author Christopher Kaster
+ */
+public class DiskCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int SEGMENT_MAGIC = 0x4A464453;
+    private static final int INDEX_MAGIC = 0x4A464449;
+    private static final int RECORD_MAGIC = 0x4A464452;
+    private static final int VERSION = 1;
+
+    // segment header: magic, version, generation
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    // record: magic, length of the rest, write time, key length, key, value length, value, checksum
+    private static final int RECORD_OVERHEAD = 4 + 4 + 8 + 2 + 4 + 8;
+
+    private static final int TOMBSTONE = -1;
+
+    private static class Location {
+        private long offset;
+        private int length;
+        private long writeTime;
+
+        Location(long offset, int length, long writeTime) {
+            this.offset = offset;
+            this.length = length;
+            this.writeTime = writeTime;
+        }
+    }
+
+    private static class Record {
+        private String key;
+        private long writeTime;
+        private byte[] value;
+        private int length;
+    }
+
+    private File segmentFile;
+    private File indexFile;
+    private RandomAccessFile segment;
+    private long generation;
+
+    private HashMap<String, Location> index = new HashMap<String, Location>();
+    private long liveBytes = 0;
+
+    private long maximumAge;
+    private double compactionThreshold = 0.5;
+    private long minimumCompactionSize = 1024 * 1024;
+    private boolean indexDirty = false;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long writes = 0;
+    private long compactions = 0;
+    private long recoveredRecords = 0;
+    private long truncatedBytes = 0;
+
+    /**
+     * Open (or create) a disk cache
+     * @param directory the directory of the cache files, will be created if it doesn't exist
+     * @param name the name of the cache files
+     * @param maximumAge values older than this (in milliseconds) are treated as missing
+     * @throws IOException if the files can't be opened or created
+     */
+    public DiskCache(File directory, String name, long maximumAge) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("jfeedly: couldn't create cache directory " + directory);
+        }
+
+        this.segmentFile = new File(directory, name + ".seg");
+        this.indexFile = new File(directory, name + ".idx");
+        this.maximumAge = maximumAge;
+
+        this.open();
+    }
+
+    /** Returns the value for the given key or null if it is not cached or too old */
+    public synchronized String get(String key) {
+        Location location = index.get(key);
+
+        if(location == null || this.isExpired(location)) {
+            misses++;
+            return null;
+        }
+
+        try {
+            Record record = this.readRecord(location.offset);
+
+            if(record != null && record.key.equals(key) && record.value != null) {
+                hits++;
+                return new String(record.value, UTF_8);
+            }
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+
+        // the record is damaged, forget it
+        this.removeLocation(key);
+        misses++;
+
+        return null;
+    }
+
+    /**
+     * Returns when the value for the given key was written
+     * @return Time in milliseconds since the epoch, -1 if it is not cached or too old
+     */
+    public synchronized long getWriteTime(String key) {
+        Location location = index.get(key);
+
+        return location != null && !this.isExpired(location) ? location.writeTime : -1;
+    }
+
+    /** Returns the keys of all cached values (including values which are too old but not removed yet) */
+    public synchronized ArrayList<String> getKeys() {
+        return new ArrayList<String>(index.keySet());
+    }
+
+    /** Is there a value for the given key which is not too old? */
+    public synchronized boolean containsKey(String key) {
+        Location location = index.get(key);
+
+        return location != null && !this.isExpired(location);
+    }
+
+    /** Add or replace a value */
+    public synchronized void put(String key, String value) {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put(key, value);
+
+        this.putAll(values);
+    }
+
+    /** Add or replace many values with one write */
+    public synchronized void putAll(Map<String, String> values) {
+        if(values.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        try {
+            long offset = segment.length();
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            ArrayList<String> keys = new ArrayList<String>(values.size());
+            ArrayList<Location> locations = new ArrayList<Location>(values.size());
+
+            for(Map.Entry<String, String> value : values.entrySet()) {
+                byte[] record = this.createRecord(value.getKey(), now, value.getValue().getBytes(UTF_8));
+
+                keys.add(value.getKey());
+                locations.add(new Location(offset + buffer.size(), record.length, now));
+
+                buffer.write(record);
+            }
+
+            segment.seek(offset);
+            segment.write(buffer.toByteArray());
+
+            for(int i = 0; i < keys.size(); i++) {
+                this.putLocation(keys.get(i), locations.get(i));
+            }
+
+            writes += keys.size();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+
+        this.compactIfNeeded();
+    }
+
+    /** Remove a value */
+    public synchronized void remove(String key) {
+        if(!index.containsKey(key)) {
+            return;
+        }
+
+        try {
+            byte[] record = this.createRecord(key, System.currentTimeMillis(), null);
+
+            segment.seek(segment.length());
+            segment.write(record);
+
+            this.removeLocation(key);
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /** Remove all values */
+    public synchronized void clear() {
+        try {
+            segment.close();
+
+            this.createSegment(segmentFile);
+
+            segment = new RandomAccessFile(segmentFile, "rw");
+            index.clear();
+            liveBytes = 0;
+
+            this.writeIndex();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Forget all values which are older than the maximum age, the space is reclaimed by the next compaction
+     * @return The number of removed values
+     */
+    public synchronized int removeExpired() {
+        ArrayList<String> expired = new ArrayList<String>();
+
+        for(Map.Entry<String, Location> location : index.entrySet()) {
+            if(this.isExpired(location.getValue())) {
+                expired.add(location.getKey());
+            }
+        }
+
+        for(String key : expired) {
+            this.removeLocation(key);
+        }
+
+        this.compactIfNeeded();
+
+        return expired.size();
+    }
+
+    /** Returns the number of cached values (including values which are too old but not removed yet) */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** Returns the size of the segment file in bytes */
+    public synchronized long getSegmentSize() {
+        try {
+            return segment.length();
+        } catch(IOException ex) {
+            return -1;
+        }
+    }
+
+    /** Returns the maximum age of a value in milliseconds */
+    public synchronized long getMaximumAge() {
+        return maximumAge;
+    }
+
+    /** Set the maximum age of a value in milliseconds */
+    public synchronized void setMaximumAge(long maximumAge) {
+        this.maximumAge = maximumAge;
+    }
+
+    /**
+     * Set when the segment file is compacted
+     * @param threshold compact when this share of the segment file is garbage (Default: 0.5)
+     * @param minimumSize never compact segment files smaller than this (in bytes, Default: 1 MB)
+     */
+    public synchronized void setCompaction(double threshold, long minimumSize) {
+        this.compactionThreshold = threshold;
+        this.minimumCompactionSize = minimumSize;
+    }
+
+    /** Returns how often a value was found */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** Returns how often a value was not found */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Returns the number of written values */
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    /** Returns how often the segment file was compacted */
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    /** Returns the number of records which were read from the segment file because the index was behind */
+    public synchronized long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /** Returns the number of bytes which were cut off the segment file because of an incomplete record */
+    public synchronized long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    /** Write all values to the disk and save the index */
+    public synchronized void flush() {
+        try {
+            segment.getFD().sync();
+
+            if(indexDirty) {
+                this.writeIndex();
+            }
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /** Rewrite the segment file with the current values only */
+    public synchronized void compact() {
+        File compactFile = new File(segmentFile.getPath() + ".tmp");
+
+        try {
+            long newGeneration = this.createSegment(compactFile);
+
+            HashMap<String, Location> newIndex = new HashMap<String, Location>();
+            long newLiveBytes = 0;
+
+            RandomAccessFile target = new RandomAccessFile(compactFile, "rw");
+
+            try {
+                long offset = HEADER_SIZE;
+
+                target.seek(offset);
+
+                for(Map.Entry<String, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+
+                    if(this.isExpired(location)) {
+                        continue;
+                    }
+
+                    byte[] record = new byte[location.length];
+
+                    segment.seek(location.offset);
+                    segment.readFully(record);
+
+                    target.write(record);
+
+                    newIndex.put(entry.getKey(), new Location(offset, location.length, location.writeTime));
+                    newLiveBytes += location.length;
+                    offset += location.length;
+                }
+
+                target.getFD().sync();
+            } finally {
+                target.close();
+            }
+
+            segment.close();
+
+            moveFile(compactFile, segmentFile);
+
+            segment = new RandomAccessFile(segmentFile, "rw");
+            generation = newGeneration;
+            index = newIndex;
+            liveBytes = newLiveBytes;
+            compactions++;
+
+            this.writeIndex();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+
+            compactFile.delete();
+
+            try {
+                // keep working with the old segment, the old handle may still be open if reading it failed
+                segment.close();
+                segment = new RandomAccessFile(segmentFile, "rw");
+            } catch(IOException reopenEx) {
+                reopenEx.printStackTrace();
+            }
+        }
+    }
+
+    /** Save the index and close the files */
+    public synchronized void close() {
+        this.flush();
+
+        try {
+            segment.close();
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void open() throws IOException {
+        if(!segmentFile.exists() || segmentFile.length() < HEADER_SIZE) {
+            this.createSegment(segmentFile);
+        }
+
+        segment = new RandomAccessFile(segmentFile, "rw");
+
+        segment.seek(0);
+
+        if(segment.readInt() != SEGMENT_MAGIC || segment.readInt() != VERSION) {
+            // unknown file, start with an empty cache
+            segment.close();
+
+            this.createSegment(segmentFile);
+
+            segment = new RandomAccessFile(segmentFile, "rw");
+            segment.seek(8);
+        }
+
+        generation = segment.readLong();
+
+        long position = this.readIndex();
+        long length = segment.length();
+
+        // read the records which were written after the index
+        while(position < length) {
+            Record record = this.readRecord(position);
+
+            if(record == null) {
+                // incomplete or damaged record, e.g. the process was killed while writing
+                truncatedBytes += length - position;
+                segment.setLength(position);
+                indexDirty = true;
+                break;
+            }
+
+            if(record.value == null) {
+                this.removeLocation(record.key);
+            } else {
+                this.putLocation(record.key, new Location(position, record.length, record.writeTime));
+            }
+
+            recoveredRecords++;
+            position += record.length;
+        }
+    }
+
+    /** Returns the position in the segment up to which the index is valid */
+    private long readIndex() {
+        if(!indexFile.exists()) {
+            return HEADER_SIZE;
+        }
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+            if(in.readInt() != INDEX_MAGIC || in.readInt() != VERSION || in.readLong() != generation) {
+                // the index belongs to another segment (e.g. the process died during compaction)
+                return HEADER_SIZE;
+            }
+
+            long indexedLength = in.readLong();
+            int size = in.readInt();
+
+            if(indexedLength > segment.length()) {
+                return HEADER_SIZE;
+            }
+
+            HashMap<String, Location> loaded = new HashMap<String, Location>(size * 2);
+            long loadedBytes = 0;
+
+            for(int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                Location location = new Location(in.readLong(), in.readInt(), in.readLong());
+
+                loaded.put(key, location);
+                loadedBytes += location.length;
+            }
+
+            index = loaded;
+            liveBytes = loadedBytes;
+
+            return indexedLength;
+        } catch(IOException ex) {
+            // damaged index, read the whole segment
+            index.clear();
+            liveBytes = 0;
+
+            return HEADER_SIZE;
+        } finally {
+            if(in != null) {
+                try {
+                    in.close();
+                } catch(IOException ex) {
+                    // do nothing
+                }
+            }
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+
+        FileOutputStream fileOut = new FileOutputStream(tmpFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(segment.length());
+            out.writeInt(index.size());
+
+            for(Map.Entry<String, Location> entry : index.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().offset);
+                out.writeInt(entry.getValue().length);
+                out.writeLong(entry.getValue().writeTime);
+            }
+
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        moveFile(tmpFile, indexFile);
+
+        indexDirty = false;
+    }
+
+    /** Create an empty segment file and return its generation */
+    private long createSegment(File file) throws IOException {
+        long newGeneration = new Random().nextLong();
+
+        FileOutputStream fileOut = new FileOutputStream(file);
+        DataOutputStream out = new DataOutputStream(fileOut);
+
+        try {
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(newGeneration);
+
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if(file.equals(segmentFile)) {
+            generation = newGeneration;
+        }
+
+        return newGeneration;
+    }
+
+    private byte[] createRecord(String key, long writeTime, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF_8);
+
+        if(keyBytes.length > 0xFFFF) {
+            throw new IOException("jfeedly: key is too long for the disk cache");
+        }
+
+        int valueLength = value != null ? value.length : 0;
+        int length = RECORD_OVERHEAD + keyBytes.length + valueLength;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(length);
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        out.writeInt(RECORD_MAGIC);
+        out.writeInt(length - 8);
+        out.writeLong(writeTime);
+        out.writeShort(keyBytes.length);
+        out.write(keyBytes);
+        out.writeInt(value != null ? value.length : TOMBSTONE);
+
+        if(value != null) {
+            out.write(value);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.toByteArray(), 8, length - 16);
+
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        return buffer.toByteArray();
+    }
+
+    /** Read the record at the given position, returns null if it is incomplete or damaged */
+    private Record readRecord(long position) throws IOException {
+        long available = segment.length() - position;
+
+        if(available < RECORD_OVERHEAD) {
+            return null;
+        }
+
+        segment.seek(position);
+
+        if(segment.readInt() != RECORD_MAGIC) {
+            return null;
+        }
+
+        int rest = segment.readInt();
+
+        if(rest < RECORD_OVERHEAD - 8 || rest > available - 8) {
+            return null;
+        }
+
+        byte[] data = new byte[rest];
+        segment.readFully(data);
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, rest - 8);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        Record record = new Record();
+        record.length = rest + 8;
+        record.writeTime = in.readLong();
+
+        byte[] keyBytes = new byte[in.readUnsignedShort()];
+        in.readFully(keyBytes);
+        record.key = new String(keyBytes, UTF_8);
+
+        int valueLength = in.readInt();
+
+        if(valueLength != TOMBSTONE) {
+            if(valueLength < 0 || valueLength > rest - 8) {
+                return null;
+            }
+
+            record.value = new byte[valueLength];
+            in.readFully(record.value);
+        }
+
+        if(in.readLong() != crc.getValue()) {
+            return null;
+        }
+
+        return record;
+    }
+
+    private boolean isExpired(Location location) {
+        return System.currentTimeMillis() - location.writeTime > maximumAge;
+    }
+
+    private void putLocation(String key, Location location) {
+        Location old = index.put(key, location);
+
+        if(old != null) {
+            liveBytes -= old.length;
+        }
+
+        liveBytes += location.length;
+        indexDirty = true;
+    }
+
+    private void removeLocation(String key) {
+        Location old = index.remove(key);
+
+        if(old != null) {
+            liveBytes -= old.length;
+            indexDirty = true;
+        }
+    }
+
+    private void compactIfNeeded() {
+        long length = this.getSegmentSize();
+
+        if(length >= minimumCompactionSize && length - HEADER_SIZE - liveBytes > length * compactionThreshold) {
+            this.compact();
+        }
+    }
+
+    private static void moveFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
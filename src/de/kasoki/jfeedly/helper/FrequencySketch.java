@@ -0,0 +1,97 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+/**
+ * Count-Min sketch which estimates how often a key was accessed recently (TinyLFU). The counters saturate at 15
+ * and are halved periodically, so old popularity fades away. Not thread-safe, BoundedCache guards it.
+ * @author Christopher Kaster
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0x5a3c8d1b, 0x2d6f9e45, 0x71b3c5a9 };
+
+    private byte[][] table;
+    private int mask;
+    private int samples = 0;
+    private int sampleSize;
+
+    /** @param expectedEntries roughly how many different keys the cache will hold */
+    FrequencySketch(long expectedEntries) {
+        int width = Integer.highestOneBit((int) Math.max(16, Math.min(expectedEntries, 1 << 22)) - 1) << 1;
+
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /** Count one access of the given key */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for(int i = 0; i < DEPTH; i++) {
+            int index = this.indexOf(hash, i);
+
+            if(table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+
+        if(added && ++samples >= sampleSize) {
+            this.reset();
+        }
+    }
+
+    /** Returns the estimated number of recent accesses of the given key */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+
+        for(int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[i][this.indexOf(hash, i)]);
+        }
+
+        return frequency;
+    }
+
+    private void reset() {
+        for(byte[] row : table) {
+            for(int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+
+        samples = samples / 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+
+        return hash;
+    }
+}
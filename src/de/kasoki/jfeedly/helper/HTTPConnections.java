@@ -20,12 +20,17 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Helper class for HTTP connections
@@ -33,7 +38,30 @@ import java.net.URL;
  */
 public class HTTPConnections {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAXIMUM_POOLED_BUFFERS = 16;
+
     private JFeedly jfeedlyHandler;
+    private volatile HTTPTransport transport;
+
+    private static class Validators {
+        private String etag;
+        private String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    // api url => validators of the last response
+    private ConcurrentHashMap<String, Validators> validators = new ConcurrentHashMap<String, Validators>();
+    private AtomicLong conditionalHits = new AtomicLong();
+    private AtomicLong conditionalMisses = new AtomicLong();
+
+    private ContentDecoder decoder = new ContentDecoder();
+    private BufferPool buffers = new BufferPool(MAXIMUM_POOLED_BUFFERS);
+    private volatile boolean compression = true;
 
     private static enum RequestType {
         POST,
@@ -47,6 +75,44 @@ public class HTTPConnections {
      */
     public HTTPConnections(JFeedly feedly) {
         this.jfeedlyHandler = feedly;
+        this.transport = new PooledTransport();
+    }
+
+    /** Returns the transport which is used to send requests */
+    public HTTPTransport getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Replace the transport which is used to send requests, the old transport will be shut down
+     * @param transport the new transport
+     */
+    public void setTransport(HTTPTransport transport) {
+        HTTPTransport oldTransport = this.transport;
+
+        this.transport = transport;
+
+        if(oldTransport != null && oldTransport != transport) {
+            oldTransport.shutdown();
+        }
+    }
+
+    /**
+     * Ask the server to compress its responses ("Accept-Encoding: gzip, deflate"), they are decompressed while
+     * being read (Default: true)
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /** Are responses requested compressed? */
+    public boolean isCompression() {
+        return this.compression;
+    }
+
+    /** Returns how many bytes were received and how many they were after decompression */
+    public TransferStatistics getTransferStatistics() {
+        return decoder.getStatistics();
     }
 
     /**
@@ -83,6 +149,40 @@ public class HTTPConnections {
         return this.sendRequest(apiUrl, urlParameters, isAuthenticated, RequestType.POST, contentType);
     }
 
+    /**
+     * Send a POST request to the feedly servers and report if it was successful, the response body is discarded.
+     * @param apiUrl the API url, usually starts with "/v3/...."
+     * @param urlParameters this field is used for parameters and body
+     * @param isAuthenticated Set to true if the client is authenticated (This will add the OAuth key to the headers)
+     * @return true if the server answered with a 2xx response code
+     */
+    public boolean trySendPostRequestToFeedly(String apiUrl, String urlParameters, boolean isAuthenticated) {
+        try {
+            HTTPResponse con = this.executeRequest(apiUrl, urlParameters, isAuthenticated, RequestType.POST,
+                    "application/json");
+
+            int responseCode = con.getResponseCode();
+
+            // read the body, so the connection can be reused
+            InputStream in = con.getBody();
+
+            if(in != null) {
+                buffers.discard(in);
+            }
+
+            if(responseCode < 200 || responseCode >= 300) {
+                System.err.println("jfeedly: POST to " + apiUrl + " failed with response code " + responseCode);
+                return false;
+            }
+
+            return true;
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+
+        return false;
+    }
+
     /**
      * Send a GET request to the feedly servers
      * @param apiUrl the API url, usually starts with "/v3/...."
@@ -92,6 +192,31 @@ public class HTTPConnections {
         return this.sendRequest(apiUrl, "", true, RequestType.GET);
     }
 
+    /**
+     * Send a GET request to the feedly servers and return the response body as reader instead of a String. The
+     * body is read into a pooled buffer, so the connection can be reused before the response is parsed.
+     * @param apiUrl the API url, usually starts with "/v3/...."
+     * @return A reader for the (UTF-8 decoded) response body, it has to be closed by the caller. null on failure
+     */
+    public Reader openGetRequestToFeedly(String apiUrl) {
+        try {
+            HTTPResponse con = this.executeRequest(apiUrl, "", true, RequestType.GET, "application/json");
+
+            if(jfeedlyHandler.getVerbose()) {
+                // the response is printed, so it is needed as String anyway
+                return new StringReader(this.readResponse(con));
+            }
+
+            InputStream in = con.getBody();
+
+            return in != null ? buffers.openReader(in, UTF_8) : new StringReader("");
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
+
+        return null;
+    }
+
     /**
      * Send a DELETE request to the feedly servers
      * @param apiUrl the API url, usually starts with "/v3/...."
@@ -108,82 +233,120 @@ public class HTTPConnections {
     private String sendRequest(String apiUrl, String parameters, boolean isAuthenticated, RequestType type,
                                String contentType) {
         try {
-            String url = this.jfeedlyHandler.getBaseUrl() + apiUrl.replaceAll(" ", "%20");
-            URL obj = new URL(url);
-            HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+            HTTPResponse con = this.executeRequest(apiUrl, parameters, isAuthenticated, type, contentType);
 
-            con.setRequestProperty("User-Agent", "jfeedly");
+            return this.readResponse(con);
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
 
-            if(!contentType.isEmpty()) {
-                con.setRequestProperty("Content-Type", contentType);
+        return null;
+    }
+
+    /**
+     * Send a conditional GET request to the feedly servers. The validators (ETag, Last-Modified) of the last
+     * response for this url are sent along, if the resource didn't change the server answers "304 Not Modified"
+     * without a body.
+     * @param apiUrl the API url, usually starts with "/v3/...."
+     * @param sendValidators Set to false if the previous response isn't available anymore
+     * @return The response, isNotModified() is true if the previous response is still valid
+     */
+    public ConditionalResponse sendConditionalGetRequestToFeedly(String apiUrl, boolean sendValidators) {
+        HashMap<String, String> headers = new HashMap<String, String>();
+
+        Validators known = sendValidators ? validators.get(apiUrl) : null;
+
+        if(known != null) {
+            if(known.etag != null) {
+                headers.put("If-None-Match", known.etag);
             }
 
-            if(isAuthenticated) {
-                con.setRequestProperty("Authorization", "OAuth " + this.jfeedlyHandler.getConnection().getAccessToken());
+            if(known.lastModified != null) {
+                headers.put("If-Modified-Since", known.lastModified);
             }
+        }
+
+        try {
+            HTTPResponse con = this.executeRequest(apiUrl, "", true, RequestType.GET, "application/json", headers);
+
+            if(con.getResponseCode() == 304 && known != null) {
+                con.close();
 
-            // Send request header
-            if(type == RequestType.POST) {
-                con.setRequestMethod("POST");
+                conditionalHits.incrementAndGet();
 
-                con.setDoOutput(true);
+                return new ConditionalResponse(true, null);
+            }
 
-                DataOutputStream writer = new DataOutputStream(con.getOutputStream());
+            conditionalMisses.incrementAndGet();
 
-                writer.write(parameters.getBytes());
-                writer.flush();
+            String etag = con.getHeader("ETag");
+            String lastModified = con.getHeader("Last-Modified");
 
-                writer.close();
-            } else if(type == RequestType.GET) {
-                con.setRequestMethod("GET");
-            } else if(type == RequestType.DELETE) {
-                con.setRequestMethod("DELETE");
+            if(con.getResponseCode() == 200 && (etag != null || lastModified != null)) {
+                validators.put(apiUrl, new Validators(etag, lastModified));
             } else {
-                System.err.println("jfeedly: Unkown RequestType " + type);
+                validators.remove(apiUrl);
             }
 
-            int responseCode = con.getResponseCode();
+            return new ConditionalResponse(false, this.readResponse(con));
+        } catch(IOException ex) {
+            ex.printStackTrace();
+        }
 
-            if(jfeedlyHandler.getVerbose()) {
-                System.out.println("\n" + type + " to: " + url);
-                System.out.println("content : " + parameters);
-                System.out.println("\nResponse Code : " + responseCode);
-            }
+        return new ConditionalResponse(false, null);
+    }
 
-            BufferedReader in = null;
+    /** Returns how often a conditional request was answered with "304 Not Modified" */
+    public long getConditionalHits() {
+        return conditionalHits.get();
+    }
 
-            // if error occurred
-            if(responseCode >= 400) {
-                in = new BufferedReader(
-                        new InputStreamReader(con.getErrorStream()));
-            } else {
-                in = new BufferedReader(
-                    new InputStreamReader(con.getInputStream()));
-            }
+    /** Returns how often a conditional request returned a new response body */
+    public long getConditionalMisses() {
+        return conditionalMisses.get();
+    }
 
-            String inputLine;
-            StringBuffer response = new StringBuffer();
+    /** Forget all stored validators, the next conditional requests will return the full responses */
+    public void clearValidators() {
+        validators.clear();
+    }
 
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
+    private String readResponse(HTTPResponse con) throws IOException {
+        int responseCode = con.getResponseCode();
 
-            in.close();
+        InputStream in = con.getBody();
 
-            String serverResponse = response.toString();
+        // the feedly API always answers in UTF-8
+        String serverResponse = in != null ? buffers.readFully(in, UTF_8) : "";
 
-            if(jfeedlyHandler.getVerbose()) {
-                //print response
-                String printableResponse = format(serverResponse);
-
-                if(responseCode >= 400) {
-                    System.err.println(printableResponse);
-                } else {
-                    System.out.println(printableResponse);
-                }
+        if(jfeedlyHandler.getVerbose()) {
+            //print response
+            String printableResponse = format(serverResponse);
+
+            if(responseCode >= 400) {
+                System.err.println(printableResponse);
+            } else {
+                System.out.println(printableResponse);
             }
+        }
 
-            return serverResponse;
+        return serverResponse;
+    }
+
+    /**
+     * Send a POST request to the feedly servers and return the response body as stream instead of reading it
+     * into a String. Use this for big responses which can be parsed while they are being received.
+     * @param apiUrl the API url, usually starts with "/v3/...."
+     * @param urlParameters this field is used for parameters and body
+     * @param isAuthenticated Set to true if the client is authenticated (This will add the OAuth key to the headers)
+     * @return A reader for the (UTF-8 decoded) response body, it has to be closed by the caller
+     */
+    public Reader openPostRequestToFeedly(String apiUrl, String urlParameters, boolean isAuthenticated) {
+        try {
+            HTTPResponse con = this.executeRequest(apiUrl, urlParameters, isAuthenticated, RequestType.POST,
+                    "application/json");
+
+            return new InputStreamReader(con.getBody(), UTF_8);
         } catch(IOException ex) {
             ex.printStackTrace();
         }
@@ -191,6 +354,61 @@ public class HTTPConnections {
         return null;
     }
 
+    private HTTPResponse executeRequest(String apiUrl, String parameters, boolean isAuthenticated,
+                                        RequestType type, String contentType) throws IOException {
+        return this.executeRequest(apiUrl, parameters, isAuthenticated, type, contentType,
+                Collections.<String, String>emptyMap());
+    }
+
+    private HTTPResponse executeRequest(String apiUrl, String parameters, boolean isAuthenticated,
+                                        RequestType type, String contentType, Map<String, String> headers)
+            throws IOException {
+        String url = this.jfeedlyHandler.getBaseUrl() + apiUrl.replaceAll(" ", "%20");
+
+        byte[] body = null;
+
+        // only POST requests have a body
+        if(type == RequestType.POST) {
+            body = parameters.getBytes(UTF_8);
+        } else if(type != RequestType.GET && type != RequestType.DELETE) {
+            System.err.println("jfeedly: Unkown RequestType " + type);
+        }
+
+        HTTPRequest request = new HTTPRequest(type.toString(), url, body);
+
+        request.setHeader("User-Agent", "jfeedly");
+
+        if(compression) {
+            request.setHeader("Accept-Encoding", ContentDecoder.ACCEPT_ENCODING);
+        }
+
+        if(!contentType.isEmpty()) {
+            request.setHeader("Content-Type", contentType);
+        }
+
+        if(isAuthenticated) {
+            request.setHeader("Authorization", "OAuth " + this.jfeedlyHandler.getConnection().getAccessToken());
+        }
+
+        for(Map.Entry<String, String> header : headers.entrySet()) {
+            request.setHeader(header.getKey(), header.getValue());
+        }
+
+        HTTPResponse response = transport.execute(request);
+
+        if(response.getBody() != null) {
+            response.setBody(decoder.decode(response.getBody(), response.getHeader("Content-Encoding")));
+        }
+
+        if(jfeedlyHandler.getVerbose()) {
+            System.out.println("\n" + type + " to: " + url);
+            System.out.println("content : " + parameters);
+            System.out.println("\nResponse Code : " + response.getResponseCode());
+        }
+
+        return response;
+    }
+
     private String format(String string) {
         if(isValidJSONObject(string)) {
             return new JSONObject(string).toString(4);
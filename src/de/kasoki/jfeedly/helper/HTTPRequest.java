@@ -0,0 +1,69 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A HTTP request which will be executed by a HTTPTransport
+ * @author Christopher Kaster
+ */
+public class HTTPRequest {
+
+    private String method;
+    private String url;
+    private LinkedHashMap<String, String> headers;
+    private byte[] body;
+
+    /**
+     * Create a new request
+     * @param method HTTP method (GET, POST, DELETE, ...)
+     * @param url the full url
+     * @param body the request body, may be null
+     */
+    public HTTPRequest(String method, String url, byte[] body) {
+        this.method = method;
+        this.url = url;
+        this.body = body;
+        this.headers = new LinkedHashMap<String, String>();
+    }
+
+    /** Set a request header */
+    public void setHeader(String name, String value) {
+        this.headers.put(name, value);
+    }
+
+    /** Returns the HTTP method */
+    public String getMethod() {
+        return method;
+    }
+
+    /** Returns the full url */
+    public String getUrl() {
+        return url;
+    }
+
+    /** Returns all request headers */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /** Returns the request body (may be null) */
+    public byte[] getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A HTTP response returned by a HTTPTransport
+ * @author Christopher Kaster
+ */
+public class HTTPResponse {
+
+    private int responseCode;
+    private HashMap<String, String> headers;
+    private InputStream body;
+
+    /**
+     * Create a new response
+     * @param responseCode the HTTP status code
+     * @param headers response headers, the names will be stored in lower case
+     * @param body the response body
+     */
+    public HTTPResponse(int responseCode, Map<String, String> headers, InputStream body) {
+        this.responseCode = responseCode;
+        this.body = body;
+        this.headers = new HashMap<String, String>();
+
+        for(Map.Entry<String, String> header : headers.entrySet()) {
+            this.headers.put(header.getKey().toLowerCase(), header.getValue());
+        }
+    }
+
+    /** Returns the HTTP status code */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /** Returns a response header (case insensitive), null if the server didn't send it */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /** Returns the response body. Close it when you are done so the connection can be reused. */
+    public InputStream getBody() {
+        return body;
+    }
+
+    /** Replace the response body, e.g. with a decoding stream */
+    void setBody(InputStream body) {
+        this.body = body;
+    }
+
+    /** Close the response body */
+    public void close() {
+        try {
+            body.close();
+        } catch(IOException ex) {
+            // do nothing
+        }
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.IOException;
+
+/**
+ * A transport sends HTTP requests to the feedly servers. HTTPConnections uses a PooledTransport by default,
+ * set another one with JFeedly.setTransport(...)
+ * @author Christopher Kaster
+ */
+public interface HTTPTransport {
+
+    /**
+     * Execute a request. The body of the returned response has to be closed (or read until the end) so the
+     * underlying connection can be reused.
+     * @param request the request
+     * @return The response of the server
+     */
+    HTTPResponse execute(HTTPRequest request) throws IOException;
+
+    /** Close all connections held by this transport */
+    void shutdown();
+}
@@ -0,0 +1,84 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+/**
+ * A snapshot of the statistics of a ConnectionPool
+ * @author Christopher Kaster
+ */
+public class PoolStatistics {
+
+    private long connectionsCreated;
+    private long connectionsReused;
+    private long connectionsEvicted;
+    private long connectionsClosed;
+    private long waits;
+    private int leasedConnections;
+    private int idleConnections;
+
+    PoolStatistics(long connectionsCreated, long connectionsReused, long connectionsEvicted,
+                   long connectionsClosed, long waits, int leasedConnections, int idleConnections) {
+        this.connectionsCreated = connectionsCreated;
+        this.connectionsReused = connectionsReused;
+        this.connectionsEvicted = connectionsEvicted;
+        this.connectionsClosed = connectionsClosed;
+        this.waits = waits;
+        this.leasedConnections = leasedConnections;
+        this.idleConnections = idleConnections;
+    }
+
+    /** Returns the number of new connections opened (TCP + TLS handshake) */
+    public long getConnectionsCreated() {
+        return connectionsCreated;
+    }
+
+    /** Returns how often an idle connection was reused instead of opening a new one */
+    public long getConnectionsReused() {
+        return connectionsReused;
+    }
+
+    /** Returns the number of idle connections which were closed because they were idle for too long */
+    public long getConnectionsEvicted() {
+        return connectionsEvicted;
+    }
+
+    /** Returns the number of connections which were closed because they couldn't be reused */
+    public long getConnectionsClosed() {
+        return connectionsClosed;
+    }
+
+    /** Returns how often a request had to wait because a host reached the maximum number of connections */
+    public long getWaits() {
+        return waits;
+    }
+
+    /** Returns the number of connections currently in use */
+    public int getLeasedConnections() {
+        return leasedConnections;
+    }
+
+    /** Returns the number of connections currently idle in the pool */
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics[created=" + connectionsCreated + ", reused=" + connectionsReused +
+                ", evicted=" + connectionsEvicted + ", closed=" + connectionsClosed + ", waits=" + waits +
+                ", leased=" + leasedConnections + ", idle=" + idleConnections + "]";
+    }
+}
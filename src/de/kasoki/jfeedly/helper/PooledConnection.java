@@ -0,0 +1,87 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * A persistent (keep-alive) socket connection to one host, owned by a ConnectionPool
+ * @author Christopher Kaster
+ */
+class PooledConnection {
+
+    private String route;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    private int numberOfUses = 0;
+    private long idleSince;
+
+    PooledConnection(String route, Socket socket) throws IOException {
+        this.route = route;
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        this.idleSince = System.nanoTime();
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    InputStream getInputStream() {
+        return in;
+    }
+
+    OutputStream getOutputStream() {
+        return out;
+    }
+
+    /** Was this connection used for a previous request? */
+    boolean isReused() {
+        return numberOfUses > 1;
+    }
+
+    void onLeased() {
+        numberOfUses++;
+    }
+
+    void onReleased() {
+        idleSince = System.nanoTime();
+    }
+
+    long getIdleSince() {
+        return idleSince;
+    }
+
+    boolean isOpen() {
+        return !socket.isClosed() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+    }
+
+    void close() {
+        try {
+            socket.close();
+        } catch(IOException ex) {
+            // do nothing
+        }
+    }
+}
@@ -0,0 +1,505 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 transport which keeps connections alive and reuses them through a ConnectionPool
+ * @author Christopher Kaster
+ */
+public class PooledTransport implements HTTPTransport {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /** bytes which will be skipped when a response body is closed early, bigger leftovers close the connection */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private ConnectionPool pool;
+
+    /** Create a new transport with a default ConnectionPool */
+    public PooledTransport() {
+        this(new ConnectionPool());
+    }
+
+    /**
+     * Create a new transport
+     * @param maxConnectionsPerHost Maximum number of connections to one host
+     * @param idleTimeout Time in milliseconds after an idle connection will be closed
+     */
+    public PooledTransport(int maxConnectionsPerHost, long idleTimeout) {
+        this(new ConnectionPool(maxConnectionsPerHost, idleTimeout));
+    }
+
+    /** Create a new transport which uses the given pool */
+    public PooledTransport(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /** Returns the connection pool of this transport */
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    @Override
+    public HTTPResponse execute(HTTPRequest request) throws IOException {
+        URL url = new URL(request.getUrl());
+
+        String scheme = url.getProtocol();
+        String host = url.getHost();
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+
+        for(int attempt = 0; ; attempt++) {
+            PooledConnection connection = pool.acquire(scheme, host, port);
+            boolean written = false;
+
+            try {
+                this.writeRequest(connection, request, url);
+                written = true;
+
+                return this.readResponse(connection, request);
+            } catch(IOException ex) {
+                pool.release(connection, false);
+
+                // the server may have closed an idle connection, try once again with a new one. Once the request
+                // was sent the server may already have processed it, so only idempotent requests are sent again
+                if(!connection.isReused() || attempt > 0 || (written && !isIdempotent(request.getMethod()))) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /** Can the request be sent twice without changing the result? (RFC 7231, section 4.2.2) */
+    static boolean isIdempotent(String method) {
+        return method.equals("GET") || method.equals("HEAD") || method.equals("OPTIONS") ||
+                method.equals("PUT") || method.equals("DELETE");
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void writeRequest(PooledConnection connection, HTTPRequest request, URL url) throws IOException {
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+
+        StringBuilder head = new StringBuilder();
+
+        head.append(request.getMethod()).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(url.getHost());
+
+        if(url.getPort() != -1) {
+            head.append(':').append(url.getPort());
+        }
+
+        head.append("\r\n");
+        head.append("Connection: keep-alive\r\n");
+
+        for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+
+        byte[] body = request.getBody();
+
+        if(body != null) {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+
+        head.append("\r\n");
+
+        OutputStream out = connection.getOutputStream();
+
+        out.write(head.toString().getBytes(ASCII));
+
+        if(body != null) {
+            out.write(body);
+        }
+
+        out.flush();
+    }
+
+    private HTTPResponse readResponse(PooledConnection connection, HTTPRequest request) throws IOException {
+        InputStream in = connection.getInputStream();
+
+        String statusLine;
+        int responseCode;
+        LinkedHashMap<String, String> headers;
+
+        // skip "100 Continue" and other informational responses
+        do {
+            statusLine = readLine(in);
+
+            if(statusLine == null) {
+                throw new EOFException("jfeedly: connection closed by server");
+            }
+
+            String[] parts = statusLine.split(" ", 3);
+
+            if(parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("jfeedly: invalid status line: " + statusLine);
+            }
+
+            try {
+                responseCode = Integer.parseInt(parts[1]);
+            } catch(NumberFormatException ex) {
+                throw new IOException("jfeedly: invalid status line: " + statusLine);
+            }
+
+            headers = readHeaders(in);
+        } while(responseCode >= 100 && responseCode < 200);
+
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1");
+        String connectionHeader = headers.get("connection");
+
+        if(connectionHeader != null) {
+            if(connectionHeader.equalsIgnoreCase("close")) {
+                keepAlive = false;
+            } else if(connectionHeader.equalsIgnoreCase("keep-alive")) {
+                keepAlive = true;
+            }
+        }
+
+        String transferEncoding = headers.get("transfer-encoding");
+        String contentLength = headers.get("content-length");
+
+        InputStream body;
+
+        if(request.getMethod().equals("HEAD") || responseCode == 204 || responseCode == 304) {
+            body = new ResponseBody(connection, new FixedLengthInputStream(in, 0), keepAlive);
+        } else if(transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            body = new ResponseBody(connection, new ChunkedInputStream(in), keepAlive);
+        } else if(contentLength != null) {
+            long length;
+
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch(NumberFormatException ex) {
+                throw new IOException("jfeedly: invalid Content-Length: " + contentLength);
+            }
+
+            body = new ResponseBody(connection, new FixedLengthInputStream(in, length), keepAlive);
+        } else {
+            // body ends when the server closes the connection
+            body = new ResponseBody(connection, in, false);
+        }
+
+        return new HTTPResponse(responseCode, headers, body);
+    }
+
+    private LinkedHashMap<String, String> readHeaders(InputStream in) throws IOException {
+        LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+
+        String line;
+
+        while((line = readLine(in)) != null && !line.isEmpty()) {
+            int index = line.indexOf(':');
+
+            if(index > 0) {
+                headers.put(line.substring(0, index).trim().toLowerCase(), line.substring(index + 1).trim());
+            }
+        }
+
+        return headers;
+    }
+
+    /** Reads a CRLF terminated line, returns null on end of stream */
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+
+        int c;
+
+        while((c = in.read()) != -1) {
+            if(c == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length;
+
+                if(length > 0 && bytes[length - 1] == '\r') {
+                    length--;
+                }
+
+                return new String(bytes, 0, length, ASCII);
+            }
+
+            line.write(c);
+        }
+
+        return line.size() > 0 ? new String(line.toByteArray(), ASCII) : null;
+    }
+
+    /** Body of a response, gives the connection back to the pool when it was read completely or closed */
+    private class ResponseBody extends InputStream {
+        private PooledConnection connection;
+        private InputStream in;
+        private boolean keepAlive;
+        private boolean released = false;
+
+        ResponseBody(PooledConnection connection, InputStream in, boolean keepAlive) {
+            this.connection = connection;
+            this.in = in;
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(released) {
+                return -1;
+            }
+
+            try {
+                int b = in.read();
+
+                if(b == -1) {
+                    this.release(keepAlive);
+                }
+
+                return b;
+            } catch(IOException ex) {
+                this.release(false);
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(released) {
+                return -1;
+            }
+
+            try {
+                int count = in.read(buffer, offset, length);
+
+                if(count == -1) {
+                    this.release(keepAlive);
+                }
+
+                return count;
+            } catch(IOException ex) {
+                this.release(false);
+                throw ex;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return released ? 0 : in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(released) {
+                return;
+            }
+
+            boolean reusable = keepAlive;
+
+            if(reusable) {
+                // skip the rest of a small body to keep the connection usable
+                try {
+                    byte[] buffer = new byte[4096];
+                    int drained = 0;
+                    int count;
+
+                    while((count = in.read(buffer)) != -1) {
+                        drained += count;
+
+                        if(drained > MAX_DRAIN_BYTES) {
+                            reusable = false;
+                            break;
+                        }
+                    }
+                } catch(IOException ex) {
+                    reusable = false;
+                }
+            }
+
+            this.release(reusable);
+        }
+
+        private void release(boolean reusable) {
+            if(!released) {
+                released = true;
+                pool.release(connection, reusable);
+            }
+        }
+    }
+
+    /** Reads exactly "length" bytes and signals end of stream afterwards */
+    private static class FixedLengthInputStream extends InputStream {
+        private InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(remaining <= 0) {
+                return -1;
+            }
+
+            int b = in.read();
+
+            if(b == -1) {
+                throw new EOFException("jfeedly: unexpected end of response body");
+            }
+
+            remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(remaining <= 0) {
+                return -1;
+            }
+
+            int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+
+            if(count == -1) {
+                throw new EOFException("jfeedly: unexpected end of response body");
+            }
+
+            remaining -= count;
+
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // the connection is owned by the pool
+        }
+    }
+
+    /** Decodes a body with "Transfer-Encoding: chunked" */
+    private static class ChunkedInputStream extends InputStream {
+        private InputStream in;
+        private long remainingInChunk = 0;
+        private boolean finished = false;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!this.nextChunk()) {
+                return -1;
+            }
+
+            int b = in.read();
+
+            if(b == -1) {
+                throw new EOFException("jfeedly: unexpected end of chunked response body");
+            }
+
+            remainingInChunk--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(!this.nextChunk()) {
+                return -1;
+            }
+
+            int count = in.read(buffer, offset, (int) Math.min(length, remainingInChunk));
+
+            if(count == -1) {
+                throw new EOFException("jfeedly: unexpected end of chunked response body");
+            }
+
+            remainingInChunk -= count;
+
+            return count;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if(finished) {
+                return false;
+            }
+
+            if(remainingInChunk > 0) {
+                return true;
+            }
+
+            String line = readLine(in);
+
+            // CRLF after the data of the previous chunk
+            if(line != null && line.isEmpty()) {
+                line = readLine(in);
+            }
+
+            if(line == null) {
+                throw new EOFException("jfeedly: unexpected end of chunked response body");
+            }
+
+            int extension = line.indexOf(';');
+
+            if(extension != -1) {
+                line = line.substring(0, extension);
+            }
+
+            try {
+                remainingInChunk = Long.parseLong(line.trim(), 16);
+            } catch(NumberFormatException ex) {
+                throw new IOException("jfeedly: invalid chunk size: " + line);
+            }
+
+            if(remainingInChunk == 0) {
+                finished = true;
+
+                // skip trailers
+                String trailer;
+
+                while((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                    // do nothing
+                }
+
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return finished ? 0 : (int) Math.min(in.available(), remainingInChunk);
+        }
+
+        @Override
+        public void close() {
+            // the connection is owned by the pool
+        }
+    }
+}
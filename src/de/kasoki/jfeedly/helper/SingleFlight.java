@@ -0,0 +1,97 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Makes sure that only one thread at a time loads a key. Threads which ask for a key that is already being loaded
+ * wait for the result of the running call instead of starting their own one.
+ * @author Christopher Kaster
+ */
+public class SingleFlight {
+
+    private ConcurrentHashMap<String, CompletableFuture<Object>> calls =
+            new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+    /**
+     * Load a key or join a call which is already loading this key
+     * @param key the key
+     * @param loader will be called if there is no running call for this key
+     * @return The result of the loader (either of this or of the running call)
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Supplier<V> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<Object>();
+        CompletableFuture<Object> runningCall = calls.putIfAbsent(key, call);
+
+        if(runningCall != null) {
+            return (V) SingleFlight.await(runningCall);
+        }
+
+        try {
+            V value = loader.get();
+
+            call.complete(value);
+
+            return value;
+        } catch(RuntimeException ex) {
+            call.completeExceptionally(ex);
+            throw ex;
+        } catch(Error ex) {
+            call.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /** Is the given key being loaded at the moment? */
+    public boolean isLoading(String key) {
+        return calls.containsKey(key);
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        boolean interrupted = false;
+
+        try {
+            while(true) {
+                try {
+                    return call.get();
+                } catch(InterruptedException ex) {
+                    interrupted = true;
+                } catch(ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+
+                    if(cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if(cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+/**
+ * A snapshot of the amount of data received from the feedly servers
+ * @author Christopher Kaster
+ */
+public class TransferStatistics {
+
+    private long responses;
+    private long compressedResponses;
+    private long transferredBytes;
+    private long decodedBytes;
+
+    TransferStatistics(long responses, long compressedResponses, long transferredBytes, long decodedBytes) {
+        this.responses = responses;
+        this.compressedResponses = compressedResponses;
+        this.transferredBytes = transferredBytes;
+        this.decodedBytes = decodedBytes;
+    }
+
+    /** Returns the number of responses */
+    public long getResponses() {
+        return responses;
+    }
+
+    /** Returns the number of responses which were sent compressed */
+    public long getCompressedResponses() {
+        return compressedResponses;
+    }
+
+    /** Returns the number of body bytes read from the network (compressed) */
+    public long getTransferredBytes() {
+        return transferredBytes;
+    }
+
+    /** Returns the number of body bytes after decompression */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /** Returns transferred bytes / decoded bytes, 1.0 if nothing was read yet */
+    public double getCompressionRatio() {
+        return decodedBytes > 0 ? (double) transferredBytes / decodedBytes : 1.0;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferStatistics[responses=" + responses + ", compressed=" + compressedResponses +
+                ", transferredBytes=" + transferredBytes + ", decodedBytes=" + decodedBytes + "]";
+    }
+}
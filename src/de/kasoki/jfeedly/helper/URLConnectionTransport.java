@@ -0,0 +1,79 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport based on java.net.HttpURLConnection (this is how jfeedly used to talk to feedly)
+ * @author Christopher Kaster
+ */
+public class URLConnectionTransport implements HTTPTransport {
+
+    @Override
+    public HTTPResponse execute(HTTPRequest request) throws IOException {
+        URL obj = new URL(request.getUrl());
+        HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+
+        con.setRequestMethod(request.getMethod());
+
+        for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            con.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if(request.getBody() != null) {
+            con.setDoOutput(true);
+
+            OutputStream writer = con.getOutputStream();
+
+            writer.write(request.getBody());
+            writer.flush();
+
+            writer.close();
+        }
+
+        int responseCode = con.getResponseCode();
+
+        HashMap<String, String> headers = new HashMap<String, String>();
+
+        for(Map.Entry<String, List<String>> header : con.getHeaderFields().entrySet()) {
+            if(header.getKey() != null && !header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+
+        InputStream body = responseCode >= 400 ? con.getErrorStream() : con.getInputStream();
+
+        if(body == null) {
+            body = new ByteArrayInputStream(new byte[0]);
+        }
+
+        return new HTTPResponse(responseCode, headers, body);
+    }
+
+    @Override
+    public void shutdown() {
+        // HttpURLConnection manages its connections itself
+    }
+}
@@ -19,21 +19,37 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.function.Function;
 
 /**
  * Representation model of "/v3/categories" response from the API
  * @author Christopher Kaster
  */
 public class Categories implements Iterable<Category> {
-    private ArrayList<Category> categories;
+    private static final Function<Category, String> ID = new Function<Category, String>() {
+        @Override
+        public String apply(Category c) {
+            return c.getCategoryId();
+        }
+    };
+
+    private IndexedList<Category> categories;
+    private boolean snapshot;
 
     private Categories(ArrayList<Category> categories) {
+        this(new IndexedList<Category>(categories, ID), false);
+    }
+
+    private Categories(IndexedList<Category> categories, boolean snapshot) {
         this.categories = categories;
+        this.snapshot = snapshot;
     }
 
     public Iterator<Category> iterator() {
-        return categories.iterator();
+        return snapshot ? Collections.unmodifiableList(categories).iterator() : categories.iterator();
     }
 
     /**
@@ -59,13 +75,82 @@ public class Categories implements Iterable<Category> {
      * @return Category
      */
     public Category getById(String id) {
-        for(Category c : this.categories) {
-            if(c.getCategoryId().equals(id)) {
-                return c;
-            }
+        return this.categories.getById(id);
+    }
+
+    /**
+     * Returns the Categories specified by IDs
+     * @param ids
+     * @return The categories in the same order as the IDs, IDs which aren't found are skipped
+     */
+    public ArrayList<Category> getByIds(Collection<String> ids) {
+        return this.categories.getByIds(ids);
+    }
+
+    /** Is this an immutable snapshot? */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /** Returns an immutable snapshot of this collection, a snapshot returns itself */
+    public Categories snapshot() {
+        return snapshot ? this : new Categories(new IndexedList<Category>(categories, ID), true);
+    }
+
+    /** Returns a builder which creates changed snapshots of this collection */
+    public Builder toBuilder() {
+        return new Builder(this.snapshot().categories);
+    }
+
+    /** Returns a builder for a new snapshot */
+    public static Builder builder() {
+        return new Builder(new IndexedList<Category>(new ArrayList<Category>(), ID));
+    }
+
+    /**
+     * Builds immutable Categories snapshots. The categories of the snapshot the builder was created from
+     * are only copied with the first change. This class is not thread-safe.
+     */
+    public static class Builder {
+
+        private SnapshotBuilder<Category> categories;
+
+        private Builder(IndexedList<Category> categories) {
+            this.categories = new SnapshotBuilder<Category>(categories, ID);
+        }
+
+        /** Add a category at the end */
+        public Builder add(Category category) {
+            categories.add(category);
+            return this;
+        }
+
+        /** Replace the category with the same ID, or add it at the end */
+        public Builder put(Category category) {
+            categories.put(category);
+            return this;
+        }
+
+        /** Remove the category with the given ID */
+        public Builder remove(String id) {
+            categories.remove(id);
+            return this;
+        }
+
+        /** Returns the category with the given ID, null if there is none */
+        public Category get(String id) {
+            return categories.get(id);
         }
 
-        return null;
+        /** Returns the number of categories */
+        public int size() {
+            return categories.size();
+        }
+
+        /** Create a new snapshot, the builder may be used for further changes afterwards */
+        public Categories build() {
+            return new Categories(categories.build(), true);
+        }
     }
 
     /**
@@ -74,12 +159,22 @@ public class Categories implements Iterable<Category> {
      * @return
      */
     public static Categories fromJSONArray(JSONArray array) {
+        return fromJSONArray(array, null);
+    }
+
+    /**
+     * Create a new "Categories"-wrapper from a given JSON array
+     * @param array
+     * @param dictionary The category IDs are canonicalized with this dictionary, may be null
+     * @return
+     */
+    public static Categories fromJSONArray(JSONArray array, IdDictionary dictionary) {
         ArrayList<Category> categories = new ArrayList<Category>();
 
         for(int i = 0; i < array.length(); i++) {
             JSONObject object = array.getJSONObject(i);
 
-            categories.add(Category.fromJSONObject(object));
+            categories.add(Category.fromJSONObject(object, dictionary));
         }
 
         return new Categories(categories);
@@ -58,33 +58,25 @@ public class Category {
 
     /** Returns the newest (date) article */
     public Entry getNewestEntry(JFeedly handler) {
-        Entries entries = this.getEntries(handler);
-
-        entries.sortByDateNewestFirst();
-
-        if(entries.getNumberOfEntries() > 0) {
-            return entries.get(0);
-        } else {
-            return null;
-        }
+        return handler.getNewestEntry(this.getCategoryId());
     }
 
     /** Returns the oldest (date) article */
     public Entry getOldestEntry(JFeedly handler) {
-        Entries entries = this.getEntries(handler);
-
-        entries.sortByDateOldestFirst();
-
-        if(entries.getNumberOfEntries() > 0) {
-            return entries.get(0);
-        } else {
-            return null;
-        }
+        return handler.getOldestEntry(this.getCategoryId());
     }
 
     /** Create a new Category from a given JSON object */
     public static Category fromJSONObject(JSONObject object) {
-        return new Category(object.getString("id"), object.getString("label"));
+        return fromJSONObject(object, null);
+    }
+
+    /**
+     * Create a new Category from a given JSON object
+     * @param dictionary The category ID is canonicalized with this dictionary, may be null
+     */
+    public static Category fromJSONObject(JSONObject object, IdDictionary dictionary) {
+        return new Category(IdDictionary.intern(dictionary, object.getString("id")), object.getString("label"));
     }
 
     /** Get the global.all (which contains all articles) category */
@@ -18,23 +18,56 @@ package de.kasoki.jfeedly.model;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.function.Function;
 
 /**
- * Representation model of the "/v3/entries" API call
+ * Representation model of the "/v3/entries" API call. An immutable snapshot (see snapshot()) can be shared by
+ * many threads without locking, use toBuilder() to create a changed copy of it.
  * @author Christopher Kaster
  */
 public class Entries implements Iterable<Entry> {
-    private ArrayList<Entry> entries;
+    private static final Function<Entry, String> ID = new Function<Entry, String>() {
+        @Override
+        public String apply(Entry e) {
+            return e.getId();
+        }
+    };
+
+    private static final Comparator<Entry> OLDEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.compareTo(b);
+        }
+    };
+
+    private static final Comparator<Entry> NEWEST_FIRST = Collections.reverseOrder(OLDEST_FIRST);
+
+    private IndexedList<Entry> entries;
+    private boolean snapshot;
+
+    // built on the first time range query
+    private volatile TimeIndex publishedIndex;
+    private volatile TimeIndex crawledIndex;
 
     private Entries(ArrayList<Entry> entries) {
+        this(new IndexedList<Entry>(entries, ID), false);
+    }
+
+    private Entries(IndexedList<Entry> entries, boolean snapshot) {
         this.entries = entries;
+        this.snapshot = snapshot;
     }
 
     public Iterator<Entry> iterator() {
-        return entries.iterator();
+        return snapshot ? Collections.unmodifiableList(entries).iterator() : entries.iterator();
     }
 
     /** Returns the number of entries in this container */
@@ -49,30 +82,134 @@ public class Entries implements Iterable<Entry> {
 
     /** Returns an Entry by the given ID */
     public Entry getById(String id) {
-        for(Entry t : this.entries) {
-            if(t.getId().equals(id)) {
-                return t;
-            }
-        }
+        return this.entries.getById(id);
+    }
 
-        return null;
+    /** Returns the entries with the given IDs (in the same order), IDs which aren't in this container are skipped */
+    public ArrayList<Entry> getByIds(Collection<String> ids) {
+        return this.entries.getByIds(ids);
     }
 
-    /** Return as array list */
+    /** Return as array list, changes to this list are visible to this container (a copy if this is a snapshot) */
     public ArrayList<Entry> toArrayList() {
-        return this.entries;
+        return snapshot ? new ArrayList<Entry>(this.entries) : this.entries;
     }
 
-    /** Sort articles by date, the oldest one comes first */
+    /** Sort articles by date, the oldest one comes first (not possible for snapshots, use getOldest()) */
     public void sortByDateOldestFirst() {
+        this.checkMutable();
+
         Collections.sort(entries);
     }
 
-    /** Sort articles by date, the newest one comes first */
+    /** Sort articles by date, the newest one comes first (not possible for snapshots, use getNewest()) */
     public void sortByDateNewestFirst() {
+        this.checkMutable();
+
         Collections.sort(entries, Collections.reverseOrder());
     }
 
+    /** Is this an immutable snapshot? */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /** Returns an immutable snapshot of this container, a snapshot returns itself */
+    public Entries snapshot() {
+        return snapshot ? this : new Entries(new IndexedList<Entry>(entries, ID), true);
+    }
+
+    /** Returns a builder which creates changed snapshots of this container */
+    public Builder toBuilder() {
+        return new Builder(this.snapshot().entries);
+    }
+
+    private void checkMutable() {
+        if(snapshot) {
+            throw new UnsupportedOperationException("jfeedly: this Entries snapshot is immutable, use toBuilder()");
+        }
+    }
+
+    /**
+     * Returns the newest entries (by published date) without sorting or changing this container
+     * @param number Maximum number of entries
+     * @return The entries, the newest first
+     */
+    public Entries getNewest(int number) {
+        return this.getTop(number, true);
+    }
+
+    /**
+     * Returns the oldest entries (by published date) without sorting or changing this container
+     * @param number Maximum number of entries
+     * @return The entries, the oldest first
+     */
+    public Entries getOldest(int number) {
+        return this.getTop(number, false);
+    }
+
+    /**
+     * Returns the entries which were published in a time range
+     * @param from Start of the range in milliseconds (inclusive)
+     * @param to End of the range in milliseconds (exclusive)
+     * @return The entries, the oldest first
+     */
+    public Entries getPublishedBetween(long from, long to) {
+        TimeIndex index = publishedIndex;
+
+        if(index == null || index.getVersion() != entries.getVersion()) {
+            index = TimeIndex.build(entries, entries.getVersion(), false);
+            publishedIndex = index;
+        }
+
+        return new Entries(index.between(from, to));
+    }
+
+    /**
+     * Returns the entries which were crawled in a time range
+     * @param from Start of the range in milliseconds (inclusive)
+     * @param to End of the range in milliseconds (exclusive)
+     * @return The entries, the oldest first
+     */
+    public Entries getCrawledBetween(long from, long to) {
+        TimeIndex index = crawledIndex;
+
+        if(index == null || index.getVersion() != entries.getVersion()) {
+            index = TimeIndex.build(entries, entries.getVersion(), true);
+            crawledIndex = index;
+        }
+
+        return new Entries(index.between(from, to));
+    }
+
+    /** Select the first entries in the given order with a heap which never holds more than "number" entries */
+    private Entries getTop(int number, boolean newest) {
+        if(number < 1) {
+            return new Entries(new ArrayList<Entry>());
+        }
+
+        Comparator<Entry> order = newest ? NEWEST_FIRST : OLDEST_FIRST;
+
+        // the head of the heap is the entry which will be dropped first
+        PriorityQueue<Entry> heap = new PriorityQueue<Entry>(Math.min(number, Math.max(entries.size(), 1)),
+                Collections.reverseOrder(order));
+
+        for(Entry entry : entries) {
+            if(heap.size() < number) {
+                heap.add(entry);
+            } else if(order.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        ArrayList<Entry> top = new ArrayList<Entry>(heap);
+
+        Collections.sort(top, order);
+
+        return new Entries(top);
+    }
+
     /** Returns a list with all entry ids */
     public ArrayList<String> toIdsList() {
         ArrayList<String> ids = new ArrayList<String>();
@@ -84,6 +221,11 @@ public class Entries implements Iterable<Entry> {
         return ids;
     }
 
+    /** Returns a column oriented copy of these entries for statistics (see EntryColumns) */
+    public EntryColumns toColumns() {
+        return EntryColumns.fromEntries(this);
+    }
+
     /** Create a new Entries-wrapper from a given JSON array */
     public static Entries fromJSONArray(JSONArray array) {
         ArrayList<Entry> entries = new ArrayList<Entry>();
@@ -97,7 +239,105 @@ public class Entries implements Iterable<Entry> {
         return new Entries(entries);
     }
 
-    /** Create a new Entries-wrapper from a given ArrayList filled with entries */
+    /**
+     * Create a new Entries-wrapper by reading a JSON array from a stream, one entry at a time
+     * @param reader A reader which contains a JSON array of entries, it will be closed afterwards
+     */
+    public static Entries fromReader(Reader reader) {
+        return fromReader(reader, false);
+    }
+
+    /**
+     * Create a new Entries-wrapper by reading a JSON array from a stream, one entry at a time
+     * @param reader A reader which contains a JSON array of entries, it will be closed afterwards
+     * @param lazy Decode the entries only when they are used (see Entry.fromJSONString)
+     */
+    public static Entries fromReader(Reader reader, boolean lazy) {
+        return fromReader(reader, lazy, null);
+    }
+
+    /**
+     * Create a new Entries-wrapper by reading a JSON array from a stream, one entry at a time
+     * @param reader A reader which contains a JSON array of entries, it will be closed afterwards
+     * @param lazy Decode the entries only when they are used (see Entry.fromJSONString)
+     * @param dictionary The origin and category IDs are canonicalized with this dictionary, may be null
+     */
+    public static Entries fromReader(Reader reader, boolean lazy, IdDictionary dictionary) {
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+
+        EntryReader entryReader = new EntryReader(reader, lazy, dictionary);
+
+        try {
+            while(entryReader.hasNext()) {
+                entries.add(entryReader.next());
+            }
+        } finally {
+            try {
+                entryReader.close();
+            } catch(IOException ex) {
+                // do nothing
+            }
+        }
+
+        return new Entries(entries);
+    }
+
+    /** Returns a builder for a new snapshot */
+    public static Builder builder() {
+        return new Builder(new IndexedList<Entry>(new ArrayList<Entry>(), ID));
+    }
+
+    /**
+     * Builds immutable Entries snapshots. The entries of the snapshot the builder was created from are only
+     * copied with the first change. This class is not thread-safe.
+     */
+    public static class Builder {
+
+        private SnapshotBuilder<Entry> entries;
+
+        private Builder(IndexedList<Entry> entries) {
+            this.entries = new SnapshotBuilder<Entry>(entries, ID);
+        }
+
+        /** Add an entry at the end */
+        public Builder add(Entry entry) {
+            entries.add(entry);
+            return this;
+        }
+
+        /** Replace the entry with the same ID, or add it at the end */
+        public Builder put(Entry entry) {
+            entries.put(entry);
+            return this;
+        }
+
+        /** Remove the entry with the given ID */
+        public Builder remove(String id) {
+            entries.remove(id);
+            return this;
+        }
+
+        /** Returns the entry with the given ID, null if there is none */
+        public Entry get(String id) {
+            return entries.get(id);
+        }
+
+        /** Returns the number of entries */
+        public int size() {
+            return entries.size();
+        }
+
+        /** Create a new snapshot, the builder may be used for further changes afterwards */
+        public Entries build() {
+            return new Entries(entries.build(), true);
+        }
+    }
+
+    /**
+     * Create a new Entries-wrapper from a given ArrayList filled with entries. The list is copied into an indexed
+     * list, so later changes to the given list are not visible to the container (earlier versions wrapped the
+     * list itself). Change the list returned by toArrayList() instead.
+     */
     public static Entries fromArrayList(ArrayList<Entry> entries) {
         return new Entries(entries);
     }
@@ -20,7 +20,9 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Representation model of one Entry from the "/v3/entries" api call. This class is sometimes refered to as article.
@@ -32,11 +34,11 @@ public class Entry implements Comparable<Entry> {
     private String fingerprint;
     private String originId;
     private String author;
-    private Date crawled;
+    private long crawled;
     private String title;
     private String summaryContent;
     private String summaryDirection;
-    private Date published;
+    private long published;
     private String visualUrl;
     private int visualWidth;
     private int visualHeight;
@@ -44,8 +46,8 @@ public class Entry implements Comparable<Entry> {
     private boolean unread;
     private ArrayList<String> categoryIds;
 
-    private Entry(String id, String fingerprint, String originId, String author, Date crawled,
-                  String title, String summaryContent, String summaryDirection, Date published,
+    Entry(String id, String fingerprint, String originId, String author, long crawled,
+                  String title, String summaryContent, String summaryDirection, long published,
                   String visualUrl, int visualWidth, int visualHeight, String visualContentType, boolean unread,
                   ArrayList<String> categoryIds) {
 
@@ -88,9 +90,19 @@ public class Entry implements Comparable<Entry> {
 
     /** Returns the date this article was crawled */
     public Date getCrawledDate() {
+        return new Date(crawled);
+    }
+
+    /** Returns the date this article was crawled in milliseconds */
+    long getCrawledTime() {
         return crawled;
     }
 
+    /** Returns the date this article was published in milliseconds, used for sorting */
+    long getPublishedTime() {
+        return published;
+    }
+
     /** Returns the title of this article */
     public String getTitle() {
         return title;
@@ -116,7 +128,7 @@ public class Entry implements Comparable<Entry> {
 
     /** Returns the date this article was published */
     public Date getPublishedDate() {
-        return published;
+        return new Date(published);
     }
 
     /** Check if this article has a "visual" (a preview image) */
@@ -149,9 +161,20 @@ public class Entry implements Comparable<Entry> {
         return unread;
     }
 
-    /** Returns the IDs of the categories which affect this article */
+    /** Returns the IDs of the categories which affect this article (a copy, entries may be shared) */
     public ArrayList<String> getCategoryIds() {
-        return categoryIds;
+        return new ArrayList<String>(categoryIds);
+    }
+
+    /** Returns the IDs of the categories which affect this article without copying them */
+    List<String> getCategoryIdList() {
+        return Collections.unmodifiableList(categoryIds);
+    }
+
+    /** Returns a copy of this article with another read state */
+    public Entry withUnread(boolean unread) {
+        return new Entry(id, fingerprint, originId, author, crawled, title, summaryContent, summaryDirection,
+                published, visualUrl, visualWidth, visualHeight, visualContentType, unread, categoryIds);
     }
 
     /** Mark this article as read */
@@ -161,11 +184,19 @@ public class Entry implements Comparable<Entry> {
 
     /** Create a new Entry from the given JSON object */
     public static Entry fromJSONObject(JSONObject object) {
+        return fromJSONObject(object, null);
+    }
+
+    /**
+     * Create a new Entry from the given JSON object
+     * @param dictionary The origin and category IDs are canonicalized with this dictionary, may be null
+     */
+    public static Entry fromJSONObject(JSONObject object, IdDictionary dictionary) {
         String id = object.getString("id");
         String fingerprint = object.getString("fingerprint");
-        String originId = object.getJSONObject("origin").getString("streamId");
+        String originId = IdDictionary.intern(dictionary, object.getJSONObject("origin").getString("streamId"));
         String author = object.has("author") ? object.getString("author") : "None";
-        Date crawled = new Date(object.getLong("crawled"));
+        long crawled = object.getLong("crawled");
         String title = object.has("title") ? object.getString("title") : "No title specified";
 
         String summaryContent = null;
@@ -176,7 +207,7 @@ public class Entry implements Comparable<Entry> {
             summaryDirection = object.getJSONObject("summary").getString("direction");
         }
 
-        Date published = new Date(object.getLong("published"));
+        long published = object.getLong("published");
 
         String visualUrl = null;
         int visualWidth = -1;
@@ -184,11 +215,12 @@ public class Entry implements Comparable<Entry> {
         String visualContentType = null;
 
         if(object.has("visual")) {
-            visualUrl = object.getJSONObject("visual").getString("url");
-            visualWidth = object.has("width") ? object.getJSONObject("visual").getInt("width") : -1;
-            visualHeight = object.has("height") ? object.getJSONObject("visual").getInt("height") : -1;
-            visualContentType = object.has("contentType") ?
-                    object.getJSONObject("visual").getString("contentType") : null;
+            JSONObject visual = object.getJSONObject("visual");
+
+            visualUrl = visual.getString("url");
+            visualWidth = visual.has("width") ? visual.getInt("width") : -1;
+            visualHeight = visual.has("height") ? visual.getInt("height") : -1;
+            visualContentType = visual.has("contentType") ? visual.getString("contentType") : null;
         }
 
 
@@ -201,7 +233,7 @@ public class Entry implements Comparable<Entry> {
         for(int i = 0; i < categories.length(); i++) {
             JSONObject category = categories.getJSONObject(i);
 
-            categoryIds.add(category.getString("id"));
+            categoryIds.add(IdDictionary.intern(dictionary, category.getString("id")));
         }
 
         return new Entry(id, fingerprint, originId, author, crawled, title,
@@ -209,9 +241,83 @@ public class Entry implements Comparable<Entry> {
                 visualHeight, visualContentType, unread, categoryIds);
     }
 
+    /**
+     * Create a new Entry from the given JSON text. Only the ID, the dates and the read state are read right
+     * away, all other fields are decoded when one of them is used for the first time.
+     * @throws org.json.JSONException if the text isn't an entry
+     */
+    public static Entry fromJSONString(String json) {
+        return fromJSONString(json, null);
+    }
+
+    /**
+     * Create a new lazily decoded Entry from the given JSON text (see fromJSONString(String))
+     * @param dictionary The origin and category IDs are canonicalized with this dictionary, may be null
+     */
+    public static Entry fromJSONString(String json, IdDictionary dictionary) {
+        return LazyEntry.parse(json, dictionary);
+    }
+
+    /** Returns this article as JSON object in the format of the feedly API (see fromJSONObject) */
+    public JSONObject toJSONObject() {
+        JSONObject object = new JSONObject();
+
+        object.put("id", id);
+        object.put("fingerprint", fingerprint);
+        object.put("origin", new JSONObject().put("streamId", originId));
+        object.put("author", author);
+        object.put("crawled", crawled);
+        object.put("title", title);
+
+        if(summaryContent != null) {
+            JSONObject summary = new JSONObject();
+
+            summary.put("content", summaryContent);
+            summary.put("direction", summaryDirection);
+
+            object.put("summary", summary);
+        }
+
+        object.put("published", published);
+
+        if(visualUrl != null) {
+            JSONObject visual = new JSONObject();
+
+            visual.put("url", visualUrl);
+            visual.put("width", visualWidth);
+            visual.put("height", visualHeight);
+
+            if(visualContentType != null) {
+                visual.put("contentType", visualContentType);
+            }
+
+            object.put("visual", visual);
+        }
+
+        object.put("unread", unread);
+
+        JSONArray categories = new JSONArray();
+
+        for(String categoryId : categoryIds) {
+            categories.put(new JSONObject().put("id", categoryId));
+        }
+
+        object.put("categories", categories);
+
+        return object;
+    }
+
+    /** Returns this article as JSON text in the format of the feedly API (see fromJSONString) */
+    public String toJSONString() {
+        return this.toJSONObject().toString();
+    }
+
     @Override
     /** compare this article to another (by published date) */
     public int compareTo(Entry otherEntry) {
-        return this.getPublishedDate().compareTo(otherEntry.getPublishedDate());
+        long published = this.getPublishedTime();
+        long otherPublished = otherEntry.getPublishedTime();
+
+        return published < otherPublished ? -1 : (published == otherPublished ? 0 : 1);
     }
 }
@@ -0,0 +1,531 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact binary file of entries which is read through a memory mapping. Every entry is a fixed size record of
+ * dates (as long), flags and references, the texts are stored as UTF-8 byte ranges and the origin and category IDs
+ * only once in a dictionary. Fields are decoded when they are requested, so reading the dates of a million entries
+ * doesn't create a single String. A file can be at most 2 GB big.
+ * @author Christopher Kaster
+ */
+public class EntryArchive implements Iterable<Entry>, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x4A464541;
+    private static final int VERSION = 1;
+
+    // magic, version, entries, dictionary size, category references, offsets of the sections
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 4 * 4;
+
+    private static final int FLAG_UNREAD = 1;
+    private static final int FLAG_SUMMARY = 2;
+    private static final int FLAG_VISUAL = 4;
+
+    // record layout
+    private static final int CRAWLED = 0;
+    private static final int PUBLISHED = 8;
+    private static final int FLAGS = 16;
+    private static final int ORIGIN = 20;
+    private static final int VISUAL_WIDTH = 24;
+    private static final int VISUAL_HEIGHT = 28;
+    private static final int CATEGORIES_START = 32;
+    private static final int CATEGORIES_COUNT = 36;
+    private static final int SUMMARY_DIRECTION = 40;
+    private static final int VISUAL_CONTENT_TYPE = 44;
+    // text fields: offset and length in the text section
+    private static final int ID = 48;
+    private static final int FINGERPRINT = 56;
+    private static final int AUTHOR = 64;
+    private static final int TITLE = 72;
+    private static final int SUMMARY_CONTENT = 80;
+    private static final int VISUAL_URL = 88;
+    private static final int RECORD_SIZE = 96;
+
+    private static final int NONE = -1;
+
+    private RandomAccessFile file;
+    private ByteBuffer buffer;
+
+    private int numberOfEntries;
+    private int recordsOffset;
+    private int categoriesOffset;
+    private int dictionaryOffset;
+    private int textOffset;
+
+    private String[] dictionary;
+
+    private EntryArchive(RandomAccessFile file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("jfeedly: not an entry archive (or an unsupported version)");
+        }
+
+        this.numberOfEntries = buffer.getInt(8);
+        this.recordsOffset = buffer.getInt(20);
+        this.categoriesOffset = buffer.getInt(24);
+        this.dictionaryOffset = buffer.getInt(28);
+        this.textOffset = buffer.getInt(32);
+
+        int dictionarySize = buffer.getInt(12);
+        int numberOfCategories = buffer.getInt(16);
+        long capacity = buffer.capacity();
+
+        // a truncated file would otherwise fail with an IndexOutOfBoundsException on the first access
+        if(numberOfEntries < 0 || dictionarySize < 0 || textOffset < HEADER_SIZE ||
+                dictionaryOffset < textOffset || (long) dictionaryOffset + dictionarySize * 8L > capacity ||
+                numberOfCategories < 0 || categoriesOffset < HEADER_SIZE ||
+                (long) categoriesOffset + numberOfCategories * 4L > capacity ||
+                recordsOffset < HEADER_SIZE || (long) recordsOffset + numberOfEntries * (long) RECORD_SIZE > capacity) {
+            throw new IOException("jfeedly: damaged entry archive");
+        }
+
+        this.dictionary = new String[dictionarySize];
+    }
+
+    /** Returns the number of entries in this archive */
+    public int getNumberOfEntries() {
+        return numberOfEntries;
+    }
+
+    /** Returns the entry at the given position with all fields decoded */
+    public Entry get(int index) {
+        int record = this.getRecord(index);
+
+        int flags = buffer.getInt(record + FLAGS);
+
+        ArrayList<String> categoryIds = this.getCategoryIds(index);
+
+        return new Entry(this.getText(record + ID), this.getText(record + FINGERPRINT), this.getOriginId(index),
+                this.getText(record + AUTHOR), buffer.getLong(record + CRAWLED),
+                this.getText(record + TITLE), this.getText(record + SUMMARY_CONTENT),
+                this.getDictionaryString(buffer.getInt(record + SUMMARY_DIRECTION)),
+                buffer.getLong(record + PUBLISHED), this.getText(record + VISUAL_URL),
+                buffer.getInt(record + VISUAL_WIDTH), buffer.getInt(record + VISUAL_HEIGHT),
+                this.getDictionaryString(buffer.getInt(record + VISUAL_CONTENT_TYPE)),
+                (flags & FLAG_UNREAD) != 0, categoryIds);
+    }
+
+    /** Returns all entries of this archive with all fields decoded */
+    public Entries getEntries() {
+        ArrayList<Entry> entries = new ArrayList<Entry>(numberOfEntries);
+
+        for(int i = 0; i < numberOfEntries; i++) {
+            entries.add(this.get(i));
+        }
+
+        return Entries.fromArrayList(entries);
+    }
+
+    /** Returns the ID of the entry at the given position */
+    public String getId(int index) {
+        return this.getText(this.getRecord(index) + ID);
+    }
+
+    /** Returns the title of the entry at the given position */
+    public String getTitle(int index) {
+        return this.getText(this.getRecord(index) + TITLE);
+    }
+
+    /** Returns the origin ID of the entry at the given position (shared by all entries of this origin) */
+    public String getOriginId(int index) {
+        return this.getDictionaryString(buffer.getInt(this.getRecord(index) + ORIGIN));
+    }
+
+    /** Returns the category IDs of the entry at the given position */
+    public ArrayList<String> getCategoryIds(int index) {
+        int record = this.getRecord(index);
+
+        int start = buffer.getInt(record + CATEGORIES_START);
+        int count = buffer.getInt(record + CATEGORIES_COUNT);
+
+        ArrayList<String> categoryIds = new ArrayList<String>(count);
+
+        for(int i = 0; i < count; i++) {
+            categoryIds.add(this.getDictionaryString(buffer.getInt(categoriesOffset + (start + i) * 4)));
+        }
+
+        return categoryIds;
+    }
+
+    /** Returns the published date of the entry at the given position in milliseconds */
+    public long getPublishedTime(int index) {
+        return buffer.getLong(this.getRecord(index) + PUBLISHED);
+    }
+
+    /** Returns the crawled date of the entry at the given position in milliseconds */
+    public long getCrawledTime(int index) {
+        return buffer.getLong(this.getRecord(index) + CRAWLED);
+    }
+
+    /** Is the entry at the given position unread? */
+    public boolean isUnread(int index) {
+        return (buffer.getInt(this.getRecord(index) + FLAGS) & FLAG_UNREAD) != 0;
+    }
+
+    /** Returns the summary of the entry at the given position, null if it has none */
+    public String getSummaryContent(int index) {
+        return this.getText(this.getRecord(index) + SUMMARY_CONTENT);
+    }
+
+    /**
+     * Returns the UTF-8 encoded summary of the entry at the given position as a read-only view of the mapped
+     * file (nothing is copied), null if it has none
+     */
+    public ByteBuffer getSummaryBytes(int index) {
+        int field = this.getRecord(index) + SUMMARY_CONTENT;
+        int offset = buffer.getInt(field);
+
+        if(offset == NONE) {
+            return null;
+        }
+
+        ByteBuffer view = buffer.duplicate();
+
+        view.position(textOffset + offset);
+        view.limit(textOffset + offset + buffer.getInt(field + 4));
+
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /** Iterate over all entries, every entry is decoded when it is requested */
+    @Override
+    public Iterator<Entry> iterator() {
+        return new Iterator<Entry>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < numberOfEntries;
+            }
+
+            @Override
+            public Entry next() {
+                if(!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return EntryArchive.this.get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Close the file. The mapping itself is released by the garbage collector, don't use the archive or the
+     * buffers it returned after closing it.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int getRecord(int index) {
+        if(index < 0 || index >= numberOfEntries) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberOfEntries);
+        }
+
+        return recordsOffset + index * RECORD_SIZE;
+    }
+
+    private String getText(int field) {
+        int offset = buffer.getInt(field);
+
+        if(offset == NONE) {
+            return null;
+        }
+
+        return this.decode(textOffset + offset, buffer.getInt(field + 4));
+    }
+
+    private synchronized String getDictionaryString(int reference) {
+        if(reference == NONE) {
+            return null;
+        }
+
+        // every dictionary string is decoded only once, so all entries share the same instance
+        if(dictionary[reference] == null) {
+            int field = dictionaryOffset + reference * 8;
+
+            dictionary[reference] = this.decode(textOffset + buffer.getInt(field), buffer.getInt(field + 4));
+        }
+
+        return dictionary[reference];
+    }
+
+    private String decode(int position, int length) {
+        if(buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, UTF_8);
+        }
+
+        byte[] bytes = new byte[length];
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Open an archive, the file is mapped into memory
+     * @param archiveFile a file written by EntryArchive.write
+     * @return The archive, close it when you are done
+     * @throws IOException if the file can't be read or isn't an entry archive
+     */
+    public static EntryArchive open(File archiveFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "r");
+
+        try {
+            if(file.length() < HEADER_SIZE) {
+                throw new IOException("jfeedly: not an entry archive (too short)");
+            }
+
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+            return new EntryArchive(file, buffer);
+        } catch(IOException ex) {
+            file.close();
+            throw ex;
+        } catch(RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Write entries to an archive file, an existing file will be replaced. The archive is written to a temporary
+     * file next to it first, so the existing file stays intact if writing fails.
+     * @param entries the entries, e.g. an Entries object
+     * @param archiveFile the file
+     * @throws IOException if the file can't be written or would be bigger than 2 GB
+     */
+    public static void write(Iterable<Entry> entries, File archiveFile) throws IOException {
+        File directory = archiveFile.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile(archiveFile.getName(), ".tmp", directory);
+        boolean written = false;
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(temporaryFile, "rw");
+
+            try {
+                FileChannel channel = file.getChannel();
+                channel.position(HEADER_SIZE);
+
+                Writer writer = new Writer(new BufferedOutputStream(Channels.newOutputStream(channel), 65536));
+
+                for(Entry entry : entries) {
+                    writer.add(entry);
+                }
+
+                writer.finish(channel);
+
+                channel.force(true);
+            } finally {
+                file.close();
+            }
+
+            moveFile(temporaryFile, archiveFile);
+            written = true;
+        } finally {
+            if(!written) {
+                temporaryFile.delete();
+            }
+        }
+    }
+
+    private static void moveFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Streams the texts into the file and collects the records, references and dictionary in memory */
+    private static class Writer {
+        private OutputStream text;
+        private long textLength = 0;
+
+        private ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private DataOutputStream recordsOut = new DataOutputStream(records);
+        private ByteArrayOutputStream categories = new ByteArrayOutputStream();
+        private DataOutputStream categoriesOut = new DataOutputStream(categories);
+
+        private HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+        private ArrayList<long[]> dictionaryRanges = new ArrayList<long[]>();
+
+        private int numberOfEntries = 0;
+        private int numberOfCategories = 0;
+
+        Writer(OutputStream text) {
+            this.text = text;
+        }
+
+        void add(Entry entry) throws IOException {
+            int flags = (entry.isUnread() ? FLAG_UNREAD : 0) | (entry.hasSummary() ? FLAG_SUMMARY : 0) |
+                    (entry.hasVisual() ? FLAG_VISUAL : 0);
+
+            recordsOut.writeLong(entry.getCrawledTime());
+            recordsOut.writeLong(entry.getPublishedTime());
+            recordsOut.writeInt(flags);
+            recordsOut.writeInt(this.intern(entry.getOriginId()));
+            recordsOut.writeInt(entry.getVisualWidth());
+            recordsOut.writeInt(entry.getVisualHeight());
+            recordsOut.writeInt(numberOfCategories);
+            recordsOut.writeInt(entry.getCategoryIdList().size());
+            recordsOut.writeInt(this.intern(entry.getSummaryDirection()));
+            recordsOut.writeInt(this.intern(entry.getVisualContentType()));
+
+            this.writeText(entry.getId());
+            this.writeText(entry.getFingerprint());
+            this.writeText(entry.getAuthor());
+            this.writeText(entry.getTitle());
+            this.writeText(entry.getSummaryContent());
+            this.writeText(entry.getVisualUrl());
+
+            for(String categoryId : entry.getCategoryIdList()) {
+                categoriesOut.writeInt(this.intern(categoryId));
+                numberOfCategories++;
+            }
+
+            numberOfEntries++;
+        }
+
+        void finish(FileChannel channel) throws IOException {
+            text.flush();
+
+            int dictionaryOffset = HEADER_SIZE + (int) textLength;
+            int categoriesOffset = dictionaryOffset + dictionaryRanges.size() * 8;
+            int recordsOffset = categoriesOffset + categories.size();
+            long end = (long) recordsOffset + records.size();
+
+            if(end > Integer.MAX_VALUE || textLength > Integer.MAX_VALUE) {
+                throw new IOException("jfeedly: the entry archive would be bigger than 2 GB, split the entries");
+            }
+
+            ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream(dictionaryRanges.size() * 8);
+            DataOutputStream dictionaryOut = new DataOutputStream(dictionaryBytes);
+
+            for(long[] range : dictionaryRanges) {
+                dictionaryOut.writeInt((int) range[0]);
+                dictionaryOut.writeInt((int) range[1]);
+            }
+
+            channel.position(dictionaryOffset);
+            writeFully(channel, ByteBuffer.wrap(dictionaryBytes.toByteArray()));
+            writeFully(channel, ByteBuffer.wrap(categories.toByteArray()));
+            writeFully(channel, ByteBuffer.wrap(records.toByteArray()));
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(numberOfEntries);
+            header.putInt(dictionaryRanges.size());
+            header.putInt(numberOfCategories);
+            header.putInt(recordsOffset);
+            header.putInt(categoriesOffset);
+            header.putInt(dictionaryOffset);
+            header.putInt(HEADER_SIZE);
+            header.flip();
+
+            channel.position(0);
+            writeFully(channel, header);
+        }
+
+        private int intern(String string) throws IOException {
+            if(string == null) {
+                return NONE;
+            }
+
+            Integer reference = dictionary.get(string);
+
+            if(reference == null) {
+                long offset = textLength;
+                int length = this.appendText(string);
+
+                reference = dictionaryRanges.size();
+
+                dictionary.put(string, reference);
+                dictionaryRanges.add(new long[] { offset, length });
+            }
+
+            return reference;
+        }
+
+        private void writeText(String string) throws IOException {
+            if(string == null) {
+                recordsOut.writeInt(NONE);
+                recordsOut.writeInt(0);
+                return;
+            }
+
+            long offset = textLength;
+
+            if(offset > Integer.MAX_VALUE) {
+                throw new IOException("jfeedly: the entry archive would be bigger than 2 GB, split the entries");
+            }
+
+            recordsOut.writeInt((int) offset);
+            recordsOut.writeInt(this.appendText(string));
+        }
+
+        private int appendText(String string) throws IOException {
+            byte[] bytes = string.getBytes(UTF_8);
+
+            text.write(bytes);
+            textLength += bytes.length;
+
+            return bytes.length;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+            while(bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,465 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only, column oriented copy of many entries for statistics. Instead of one object per entry the
+ * times are stored in long arrays, the read states in a bit set and the origin and category IDs as numbers
+ * which refer to a dictionary of the distinct IDs. The text fields (except the entry IDs) are not kept.
+ *
+ * Filters return a BitSet with one bit per entry (combine them with and(), or() ...), the aggregates take
+ * such a selection or null for all entries. This class is immutable and thread-safe.
+ * @author Christopher Kaster
+ */
+public class EntryColumns {
+
+    private int size;
+    private String[] ids;
+    private long[] crawled;
+    private long[] published;
+    private BitSet unread;
+
+    private String[] origins;
+    private int[] originCodes;
+
+    // the categories of entry i are categoryCodes[categoryOffsets[i]] ... categoryCodes[categoryOffsets[i + 1] - 1]
+    private String[] categories;
+    private int[] categoryOffsets;
+    private int[] categoryCodes;
+
+    private HashMap<String, Integer> originDictionary;
+    private HashMap<String, Integer> categoryDictionary;
+
+    private EntryColumns(int size, String[] ids, long[] crawled, long[] published, BitSet unread,
+                         HashMap<String, Integer> originDictionary, int[] originCodes,
+                         HashMap<String, Integer> categoryDictionary, int[] categoryOffsets, int[] categoryCodes) {
+        this.size = size;
+        this.ids = ids;
+        this.crawled = crawled;
+        this.published = published;
+        this.unread = unread;
+        this.originDictionary = originDictionary;
+        this.originCodes = originCodes;
+        this.categoryDictionary = categoryDictionary;
+        this.categoryOffsets = categoryOffsets;
+        this.categoryCodes = categoryCodes;
+
+        this.origins = toArray(originDictionary);
+        this.categories = toArray(categoryDictionary);
+    }
+
+    /** Returns the number of entries */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the ID of the entry at the given position */
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    /** Returns the crawled date of the entry at the given position in milliseconds */
+    public long getCrawledTime(int index) {
+        return crawled[index];
+    }
+
+    /** Returns the published date of the entry at the given position in milliseconds */
+    public long getPublishedTime(int index) {
+        return published[index];
+    }
+
+    /** Is the entry at the given position unread? */
+    public boolean isUnread(int index) {
+        return unread.get(index);
+    }
+
+    /** Returns the origin ID of the entry at the given position */
+    public String getOriginId(int index) {
+        return origins[originCodes[index]];
+    }
+
+    /** Returns the category IDs of the entry at the given position */
+    public List<String> getCategoryIds(int index) {
+        ArrayList<String> categoryIds = new ArrayList<String>(categoryOffsets[index + 1] - categoryOffsets[index]);
+
+        for(int i = categoryOffsets[index]; i < categoryOffsets[index + 1]; i++) {
+            categoryIds.add(categories[categoryCodes[i]]);
+        }
+
+        return categoryIds;
+    }
+
+    /** Returns the distinct origin IDs */
+    public List<String> getOriginIds() {
+        return Collections.unmodifiableList(Arrays.asList(origins));
+    }
+
+    /** Returns the distinct category IDs */
+    public List<String> getCategoryIds() {
+        return Collections.unmodifiableList(Arrays.asList(categories));
+    }
+
+    /** Select all entries */
+    public BitSet all() {
+        BitSet selection = new BitSet(size);
+
+        selection.set(0, size);
+
+        return selection;
+    }
+
+    /** Select the unread entries */
+    public BitSet unread() {
+        return (BitSet) unread.clone();
+    }
+
+    /** Select the read entries */
+    public BitSet read() {
+        BitSet selection = this.all();
+
+        selection.andNot(unread);
+
+        return selection;
+    }
+
+    /** Select the entries which were published in [from, to) (milliseconds), none if to isn't after from */
+    public BitSet publishedBetween(long from, long to) {
+        return this.between(published, from, to);
+    }
+
+    /** Select the entries which were crawled in [from, to) (milliseconds), none if to isn't after from */
+    public BitSet crawledBetween(long from, long to) {
+        return this.between(crawled, from, to);
+    }
+
+    /** Select the entries of an origin (feed) */
+    public BitSet fromOrigin(String originId) {
+        BitSet selection = new BitSet(size);
+
+        Integer code = originDictionary.get(originId);
+
+        if(code != null) {
+            int c = code;
+
+            for(int i = 0; i < size; i++) {
+                if(originCodes[i] == c) {
+                    selection.set(i);
+                }
+            }
+        }
+
+        return selection;
+    }
+
+    /** Select the entries which belong to a category */
+    public BitSet inCategory(String categoryId) {
+        BitSet selection = new BitSet(size);
+
+        Integer code = categoryDictionary.get(categoryId);
+
+        if(code != null) {
+            int c = code;
+
+            for(int i = 0; i < size; i++) {
+                for(int j = categoryOffsets[i]; j < categoryOffsets[i + 1]; j++) {
+                    if(categoryCodes[j] == c) {
+                        selection.set(i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return selection;
+    }
+
+    /** Returns the number of entries in a selection (null = all) */
+    public int count(BitSet selection) {
+        return selection != null ? selection.cardinality() : size;
+    }
+
+    /** Returns the number of unread entries in a selection (null = all) */
+    public int countUnread(BitSet selection) {
+        if(selection == null) {
+            return unread.cardinality();
+        }
+
+        BitSet selected = (BitSet) selection.clone();
+
+        selected.and(unread);
+
+        return selected.cardinality();
+    }
+
+    /** Returns the share of unread entries in a selection (null = all), 0 if the selection is empty */
+    public double getUnreadRatio(BitSet selection) {
+        int count = this.count(selection);
+
+        return count > 0 ? (double) this.countUnread(selection) / count : 0;
+    }
+
+    /** Returns the number of entries per origin ID in a selection (null = all) */
+    public HashMap<String, Integer> countByOrigin(BitSet selection) {
+        return this.toMap(origins, this.countPerOrigin(selection));
+    }
+
+    /** Returns the number of unread entries per origin ID in a selection (null = all) */
+    public HashMap<String, Integer> countUnreadByOrigin(BitSet selection) {
+        BitSet selected = selection != null ? (BitSet) selection.clone() : this.all();
+
+        selected.and(unread);
+
+        return this.toMap(origins, this.countPerOrigin(selected));
+    }
+
+    /** Returns the number of entries per category ID in a selection (null = all) */
+    public HashMap<String, Integer> countByCategory(BitSet selection) {
+        int[] counts = new int[categories.length];
+
+        if(selection == null) {
+            for(int j = 0; j < categoryOffsets[size]; j++) {
+                counts[categoryCodes[j]]++;
+            }
+        } else {
+            for(int i = selection.nextSetBit(0); i >= 0 && i < size; i = selection.nextSetBit(i + 1)) {
+                for(int j = categoryOffsets[i]; j < categoryOffsets[i + 1]; j++) {
+                    counts[categoryCodes[j]]++;
+                }
+            }
+        }
+
+        return this.toMap(categories, counts);
+    }
+
+    /**
+     * Count the entries per time bucket by published date
+     * @param from Start of the first bucket (milliseconds)
+     * @param bucketSize Length of a bucket (milliseconds, positive), e.g. 60 * CachedType.ONE_MINUTE
+     * @param buckets Number of buckets (not negative), entries outside of them aren't counted
+     * @param selection The entries to count, null for all
+     * @return The number of entries per bucket
+     * @throws IllegalArgumentException if bucketSize or buckets is out of range
+     */
+    public int[] histogramByPublished(long from, long bucketSize, int buckets, BitSet selection) {
+        return this.histogram(published, from, bucketSize, buckets, selection);
+    }
+
+    /** Count the entries per time bucket by crawled date, see histogramByPublished */
+    public int[] histogramByCrawled(long from, long bucketSize, int buckets, BitSet selection) {
+        return this.histogram(crawled, from, bucketSize, buckets, selection);
+    }
+
+    private BitSet between(long[] times, long from, long to) {
+        BitSet selection = new BitSet(size);
+
+        for(int i = 0; i < size; i++) {
+            if(times[i] >= from && times[i] < to) {
+                selection.set(i);
+            }
+        }
+
+        return selection;
+    }
+
+    private int[] countPerOrigin(BitSet selection) {
+        int[] counts = new int[origins.length];
+
+        if(selection == null) {
+            for(int i = 0; i < size; i++) {
+                counts[originCodes[i]]++;
+            }
+        } else {
+            for(int i = selection.nextSetBit(0); i >= 0 && i < size; i = selection.nextSetBit(i + 1)) {
+                counts[originCodes[i]]++;
+            }
+        }
+
+        return counts;
+    }
+
+    private int[] histogram(long[] times, long from, long bucketSize, int buckets, BitSet selection) {
+        if(bucketSize <= 0) {
+            throw new IllegalArgumentException("bucketSize has to be positive");
+        }
+
+        if(buckets < 0) {
+            throw new IllegalArgumentException("buckets must not be negative");
+        }
+
+        // the end of the last bucket has to fit into a long
+        if(bucketSize > (Long.MAX_VALUE - Math.max(from, 0)) / Math.max(buckets, 1)) {
+            throw new IllegalArgumentException("the buckets end after Long.MAX_VALUE");
+        }
+
+        int[] counts = new int[buckets];
+        long to = from + bucketSize * buckets;
+
+        if(selection == null) {
+            for(int i = 0; i < size; i++) {
+                long time = times[i];
+
+                if(time >= from && time < to) {
+                    counts[(int) ((time - from) / bucketSize)]++;
+                }
+            }
+        } else {
+            for(int i = selection.nextSetBit(0); i >= 0 && i < size; i = selection.nextSetBit(i + 1)) {
+                long time = times[i];
+
+                if(time >= from && time < to) {
+                    counts[(int) ((time - from) / bucketSize)]++;
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    private HashMap<String, Integer> toMap(String[] dictionary, int[] counts) {
+        HashMap<String, Integer> map = new HashMap<String, Integer>();
+
+        for(int code = 0; code < counts.length; code++) {
+            if(counts[code] > 0) {
+                map.put(dictionary[code], counts[code]);
+            }
+        }
+
+        return map;
+    }
+
+    private static String[] toArray(HashMap<String, Integer> dictionary) {
+        String[] values = new String[dictionary.size()];
+
+        for(Map.Entry<String, Integer> value : dictionary.entrySet()) {
+            values[value.getValue()] = value.getKey();
+        }
+
+        return values;
+    }
+
+    /** Collects the columns, one entry at a time */
+    private static class Builder {
+
+        private int size = 0;
+        private String[] ids;
+        private long[] crawled;
+        private long[] published;
+        private BitSet unread = new BitSet();
+        private int[] originCodes;
+        private int[] categoryOffsets;
+        private int[] categoryCodes = new int[16];
+
+        private HashMap<String, Integer> originDictionary = new HashMap<String, Integer>();
+        private HashMap<String, Integer> categoryDictionary = new HashMap<String, Integer>();
+
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 16);
+
+            ids = new String[capacity];
+            crawled = new long[capacity];
+            published = new long[capacity];
+            originCodes = new int[capacity];
+            categoryOffsets = new int[capacity + 1];
+        }
+
+        void add(String id, long crawledTime, long publishedTime, boolean isUnread, String originId,
+                 List<String> categoryIds) {
+            if(size == ids.length) {
+                int capacity = size * 2;
+
+                ids = Arrays.copyOf(ids, capacity);
+                crawled = Arrays.copyOf(crawled, capacity);
+                published = Arrays.copyOf(published, capacity);
+                originCodes = Arrays.copyOf(originCodes, capacity);
+                categoryOffsets = Arrays.copyOf(categoryOffsets, capacity + 1);
+            }
+
+            int categoriesEnd = categoryOffsets[size] + categoryIds.size();
+
+            if(categoriesEnd > categoryCodes.length) {
+                categoryCodes = Arrays.copyOf(categoryCodes, Math.max(categoryCodes.length * 2, categoriesEnd));
+            }
+
+            ids[size] = id;
+            crawled[size] = crawledTime;
+            published[size] = publishedTime;
+            unread.set(size, isUnread);
+            originCodes[size] = code(originDictionary, originId);
+
+            int position = categoryOffsets[size];
+
+            for(String categoryId : categoryIds) {
+                categoryCodes[position++] = code(categoryDictionary, categoryId);
+            }
+
+            categoryOffsets[size + 1] = position;
+
+            size++;
+        }
+
+        private static int code(HashMap<String, Integer> dictionary, String value) {
+            Integer code = dictionary.get(value);
+
+            if(code == null) {
+                code = dictionary.size();
+                dictionary.put(value, code);
+            }
+
+            return code;
+        }
+
+        EntryColumns build() {
+            return new EntryColumns(size, Arrays.copyOf(ids, size), Arrays.copyOf(crawled, size),
+                    Arrays.copyOf(published, size), unread, originDictionary, Arrays.copyOf(originCodes, size),
+                    categoryDictionary, Arrays.copyOf(categoryOffsets, size + 1),
+                    Arrays.copyOf(categoryCodes, categoryOffsets[size]));
+        }
+    }
+
+    /** Create the columns of the given entries, the positions are the same as in the container */
+    public static EntryColumns fromEntries(Entries entries) {
+        Builder builder = new Builder(entries.getNumberOfEntries());
+
+        for(Entry entry : entries) {
+            builder.add(entry.getId(), entry.getCrawledTime(), entry.getPublishedTime(), entry.isUnread(),
+                    entry.getOriginId(), entry.getCategoryIdList());
+        }
+
+        return builder.build();
+    }
+
+    /** Create the columns of the entries of an archive without decoding the entries */
+    public static EntryColumns fromArchive(EntryArchive archive) {
+        int size = archive.getNumberOfEntries();
+
+        Builder builder = new Builder(size);
+
+        for(int i = 0; i < size; i++) {
+            builder.add(archive.getId(i), archive.getCrawledTime(i), archive.getPublishedTime(i),
+                    archive.isUnread(i), archive.getOriginId(i), archive.getCategoryIds(i));
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,68 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+
+/**
+ * Representation model of the "/v3/streams/ids" API call, one page of entry IDs of a stream
+ * @author Christopher Kaster
+ */
+public class EntryIds {
+
+    private ArrayList<String> ids;
+    private String continuation;
+
+    private EntryIds(ArrayList<String> ids, String continuation) {
+        this.ids = ids;
+        this.continuation = continuation;
+    }
+
+    /** Returns the entry IDs of this page */
+    public ArrayList<String> getIds() {
+        return ids;
+    }
+
+    /** Returns the continuation token for the next page, null if this is the last page */
+    public String getContinuation() {
+        return continuation;
+    }
+
+    /** Is there another page after this one? */
+    public boolean hasContinuation() {
+        return continuation != null;
+    }
+
+    /** Create new EntryIds from a given JSON object */
+    public static EntryIds fromJSONObject(JSONObject object) {
+        ArrayList<String> ids = new ArrayList<String>();
+
+        if(object.has("ids")) {
+            JSONArray array = object.getJSONArray("ids");
+
+            for(int i = 0; i < array.length(); i++) {
+                ids.add(array.getString(i));
+            }
+        }
+
+        String continuation = object.has("continuation") ? object.getString("continuation") : null;
+
+        return new EntryIds(ids, continuation);
+    }
+}
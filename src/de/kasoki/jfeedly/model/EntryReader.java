@@ -0,0 +1,256 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull parser for the JSON array returned by "/v3/entries/.mget". Reads one entry at a time from the stream,
+ * so only the current entry exists as JSONObject instead of the whole response.
+ * @author Christopher Kaster
+ */
+public class EntryReader implements Iterator<Entry>, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Reader reader;
+    private JSONTokener tokener;
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean lazy;
+    private IdDictionary dictionary;
+
+    // lazy entries are cut out of the stream directly, which is much faster than going through the tokener
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * Create a new reader
+     * @param reader A reader positioned before the opening '[' of the entries array
+     */
+    public EntryReader(Reader reader) {
+        this(reader, false);
+    }
+
+    /**
+     * Create a new reader
+     * @param reader A reader positioned before the opening '[' of the entries array
+     * @param lazy Only cut out the JSON text of each entry and decode it when it's used (see Entry.fromJSONString)
+     */
+    public EntryReader(Reader reader, boolean lazy) {
+        this(reader, lazy, null);
+    }
+
+    /**
+     * Create a new reader
+     * @param reader A reader positioned before the opening '[' of the entries array
+     * @param lazy Only cut out the JSON text of each entry and decode it when it's used (see Entry.fromJSONString)
+     * @param dictionary The origin and category IDs are canonicalized with this dictionary, may be null
+     */
+    public EntryReader(Reader reader, boolean lazy, IdDictionary dictionary) {
+        this.reader = reader;
+        this.lazy = lazy;
+        this.dictionary = dictionary;
+
+        if(lazy) {
+            this.buffer = new char[BUFFER_SIZE];
+        } else {
+            this.tokener = new JSONTokener(reader);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(finished) {
+            return false;
+        }
+
+        if(!started) {
+            started = true;
+
+            if(this.nextClean() != '[') {
+                throw this.syntaxError("A JSONArray text must start with '['");
+            }
+
+            if(this.nextClean() == ']') {
+                this.finish();
+                return false;
+            }
+
+            this.back();
+        }
+
+        return true;
+    }
+
+    @Override
+    public Entry next() {
+        if(!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Entry entry;
+
+        if(lazy) {
+            entry = Entry.fromJSONString(this.nextObjectText(), dictionary);
+        } else {
+            entry = Entry.fromJSONObject(new JSONObject(tokener), dictionary);
+        }
+
+        switch(this.nextClean()) {
+            case ',':
+                break;
+            case ']':
+                this.finish();
+                break;
+            default:
+                throw this.syntaxError("Expected a ',' or ']'");
+        }
+
+        return entry;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Returns the next character which isn't whitespace, 0 at the end of the stream */
+    private char nextClean() {
+        if(!lazy) {
+            return tokener.nextClean();
+        }
+
+        while(this.fill()) {
+            char c = buffer[position++];
+
+            if(!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    /** Go back one character, only allowed directly after nextClean() */
+    private void back() {
+        if(lazy) {
+            position--;
+        } else {
+            tokener.back();
+        }
+    }
+
+    /** Make sure the buffer isn't empty, returns false at the end of the stream */
+    private boolean fill() {
+        if(position < limit) {
+            return true;
+        }
+
+        try {
+            int n;
+
+            do {
+                n = reader.read(buffer, 0, buffer.length);
+            } while(n == 0);
+
+            position = 0;
+            limit = Math.max(n, 0);
+
+            return n > 0;
+        } catch(IOException ex) {
+            throw new JSONException(ex);
+        }
+    }
+
+    /** Returns the text of the next JSON object without parsing it */
+    private String nextObjectText() {
+        if(this.nextClean() != '{') {
+            throw this.syntaxError("A JSONObject text must begin with '{'");
+        }
+
+        StringBuilder text = new StringBuilder(1024);
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+
+        text.append('{');
+
+        while(depth > 0) {
+            if(!this.fill()) {
+                throw this.syntaxError("Unterminated entry");
+            }
+
+            int start = position;
+
+            while(position < limit && depth > 0) {
+                char c = buffer[position++];
+
+                if(inString) {
+                    if(escaped) {
+                        escaped = false;
+                    } else if(c == '\\') {
+                        escaped = true;
+                    } else if(c == '"') {
+                        inString = false;
+                    }
+                } else if(c == '"') {
+                    inString = true;
+                } else if(c == '{' || c == '[') {
+                    depth++;
+                } else if(c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+
+            text.append(buffer, start, position - start);
+        }
+
+        return text.toString();
+    }
+
+    private JSONException syntaxError(String message) {
+        if(!lazy) {
+            return tokener.syntaxError(message);
+        }
+
+        return new JSONException(message);
+    }
+
+    private void finish() {
+        finished = true;
+
+        try {
+            this.close();
+        } catch(IOException ex) {
+            // do nothing
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -90,28 +90,12 @@ public class Feed {
 
     /** Get the newest article in this feed */
     public Entry getNewestEntry(JFeedly handler) {
-        Entries entries = this.getEntries(handler);
-
-        entries.sortByDateNewestFirst();
-
-        if(entries.getNumberOfEntries() > 0) {
-            return entries.get(0);
-        } else {
-            return null;
-        }
+        return handler.getNewestEntry(this.getId());
     }
 
     /**Get the oldest article in this feed */
     public Entry getOldestEntry(JFeedly handler) {
-        Entries entries = this.getEntries(handler);
-
-        entries.sortByDateOldestFirst();
-
-        if(entries.getNumberOfEntries() > 0) {
-            return entries.get(0);
-        } else {
-            return null;
-        }
+        return handler.getOldestEntry(this.getId());
     }
 
     /** Create a new Feed from a given JSON object */
@@ -0,0 +1,85 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes the stream, origin and category IDs which are repeated in thousands of entries, so all
+ * entries share one String instance per ID instead of holding their own copy. Each handler has its own
+ * dictionary (see JFeedly.getIdDictionary()). This class is thread-safe.
+ * @author Christopher Kaster
+ */
+public class IdDictionary {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 100000;
+
+    private ConcurrentHashMap<String, String> ids = new ConcurrentHashMap<String, String>();
+    private int maximumSize;
+
+    /** Create a new dictionary with the default maximum size */
+    public IdDictionary() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Create a new dictionary
+     * @param maximumSize When the dictionary contains this many IDs new IDs are no longer added
+     */
+    public IdDictionary(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the canonical instance of an ID
+     * @param id the ID, may be null
+     * @return An equal String, the same instance for every call with an equal ID
+     */
+    public String intern(String id) {
+        if(id == null) {
+            return null;
+        }
+
+        String canonical = ids.get(id);
+
+        if(canonical != null) {
+            return canonical;
+        }
+
+        if(ids.size() >= maximumSize) {
+            return id;
+        }
+
+        canonical = ids.putIfAbsent(id, id);
+
+        return canonical != null ? canonical : id;
+    }
+
+    /** Returns the number of IDs in this dictionary */
+    public int size() {
+        return ids.size();
+    }
+
+    /** Remove all IDs */
+    public void clear() {
+        ids.clear();
+    }
+
+    /** Canonicalize an ID with the given dictionary, or return it unchanged if there is no dictionary */
+    static String intern(IdDictionary dictionary, String id) {
+        return dictionary != null ? dictionary.intern(id) : id;
+    }
+}
@@ -0,0 +1,222 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * An ArrayList with an ID index. The index is built on the first lookup and built again after the list was
+ * changed (see getVersion()), so lookups by ID don't have to scan the whole list. Lookups may be done by several
+ * threads at once. The list isn't serializable, because its ID function isn't.
+ * @author Christopher Kaster
+ */
+class IndexedList<T> extends ArrayList<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static class Index {
+        private int version;
+        // id => position of the first element with this id
+        private HashMap<String, Integer> positions;
+
+        Index(int version, HashMap<String, Integer> positions) {
+            this.version = version;
+            this.positions = positions;
+        }
+    }
+
+    private transient Function<T, String> idFunction;
+    private transient volatile Index index;
+
+    // ArrayList doesn't count set() as a modification
+    private int replacements = 0;
+
+    /**
+     * Create a new list
+     * @param elements the initial elements
+     * @param idFunction returns the ID of an element
+     */
+    IndexedList(Collection<? extends T> elements, Function<T, String> idFunction) {
+        super(elements);
+
+        this.idFunction = idFunction;
+    }
+
+    /** Returns the first element with the given ID, null if there is none */
+    T getById(String id) {
+        Integer position = this.getIndex().get(id);
+
+        return position != null ? this.get(position) : null;
+    }
+
+    /** Returns the position of the first element with the given ID, -1 if there is none */
+    int indexOfId(String id) {
+        Integer position = this.getIndex().get(id);
+
+        return position != null ? position : -1;
+    }
+
+    /** Returns the elements with the given IDs in the same order, IDs which aren't found are skipped */
+    ArrayList<T> getByIds(Collection<String> ids) {
+        HashMap<String, Integer> positions = this.getIndex();
+        ArrayList<T> found = new ArrayList<T>(ids.size());
+
+        for(String id : ids) {
+            Integer position = positions.get(id);
+
+            if(position != null) {
+                found.add(this.get(position));
+            }
+        }
+
+        return found;
+    }
+
+    private HashMap<String, Integer> getIndex() {
+        Index current = this.getCurrentIndex();
+
+        if(current == null) {
+            int version = this.getVersion();
+
+            HashMap<String, Integer> positions = new HashMap<String, Integer>(this.size() * 4 / 3 + 1);
+
+            // walk backwards, so the first element wins if an ID exists more than once
+            for(int i = this.size() - 1; i >= 0; i--) {
+                positions.put(idFunction.apply(this.get(i)), i);
+            }
+
+            current = new Index(version, positions);
+            index = current;
+        }
+
+        return current.positions;
+    }
+
+    /** Returns the index if it is up to date, null otherwise */
+    private Index getCurrentIndex() {
+        Index current = index;
+
+        return current != null && current.version == this.getVersion() ? current : null;
+    }
+
+    /** Returns a number which changes whenever the list is changed, used to detect outdated indexes */
+    int getVersion() {
+        return modCount + replacements;
+    }
+
+    @Override
+    public boolean add(T element) {
+        Index current = this.getCurrentIndex();
+
+        super.add(element);
+
+        // appending doesn't move the other elements, so the index can be updated instead of built again
+        if(current != null) {
+            String id = idFunction.apply(element);
+
+            if(!current.positions.containsKey(id)) {
+                current.positions.put(id, this.size() - 1);
+            }
+
+            index = new Index(this.getVersion(), current.positions);
+        }
+
+        return true;
+    }
+
+    @Override
+    public T set(int position, T element) {
+        Index current = this.getCurrentIndex();
+
+        T previous = super.set(position, element);
+        replacements++;
+
+        // an element replaced by one with the same ID keeps the index valid
+        if(current != null && isSameId(idFunction.apply(previous), idFunction.apply(element))) {
+            index = new Index(this.getVersion(), current.positions);
+        }
+
+        return previous;
+    }
+
+    private static boolean isSameId(String id, String otherId) {
+        return id == null ? otherId == null : id.equals(otherId);
+    }
+
+    /** The sub list of ArrayList replaces elements without calling set(), so its changes are counted here */
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return new IndexedSubList(super.subList(fromIndex, toIndex));
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException("jfeedly: IndexedList isn't serializable");
+    }
+
+    private class IndexedSubList extends AbstractList<T> implements RandomAccess {
+        private List<T> list;
+
+        IndexedSubList(List<T> list) {
+            this.list = list;
+        }
+
+        @Override
+        public T get(int position) {
+            return list.get(position);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public T set(int position, T element) {
+            replacements++;
+
+            return list.set(position, element);
+        }
+
+        @Override
+        public void add(int position, T element) {
+            list.add(position, element);
+            modCount++;
+        }
+
+        @Override
+        public T remove(int position) {
+            T element = list.remove(position);
+            modCount++;
+
+            return element;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            list.subList(fromIndex, toIndex).clear();
+            modCount++;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An Entry which keeps the JSON text it was read from and only decodes what is asked for. The ID, the dates
+ * and the read state are picked from the text right away (without parsing the summary or any other nested
+ * value), everything else is decoded on the first access of such a field. This makes working with IDs,
+ * sorting and filtering by read state much cheaper. This class is thread-safe.
+ * @author Christopher Kaster
+ */
+class LazyEntry extends Entry {
+
+    private String json;
+    private String id;
+    private long crawled;
+    private long published;
+    private boolean unread;
+    private IdDictionary dictionary;
+
+    private volatile Entry decoded;
+
+    private LazyEntry(String json, String id, long crawled, long published, boolean unread,
+                      IdDictionary dictionary) {
+        super(id, null, null, null, crawled, null, null, null, published, null, -1, -1, null, unread, null);
+
+        this.json = json;
+        this.id = id;
+        this.crawled = crawled;
+        this.published = published;
+        this.unread = unread;
+        this.dictionary = dictionary;
+    }
+
+    /** Decode all fields, only done once */
+    private Entry decoded() {
+        Entry entry = decoded;
+
+        if(entry == null) {
+            entry = Entry.fromJSONObject(new JSONObject(json), dictionary);
+
+            decoded = entry;
+        }
+
+        return entry;
+    }
+
+    /** Has this entry been decoded completely? */
+    boolean isDecoded() {
+        return decoded != null;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return this.decoded().getFingerprint();
+    }
+
+    @Override
+    public String getOriginId() {
+        return this.decoded().getOriginId();
+    }
+
+    @Override
+    public String getAuthor() {
+        return this.decoded().getAuthor();
+    }
+
+    @Override
+    public Date getCrawledDate() {
+        return new Date(crawled);
+    }
+
+    @Override
+    long getCrawledTime() {
+        return crawled;
+    }
+
+    @Override
+    public String getTitle() {
+        return this.decoded().getTitle();
+    }
+
+    @Override
+    public boolean hasSummary() {
+        return this.decoded().hasSummary();
+    }
+
+    @Override
+    public String getSummaryContent() {
+        return this.decoded().getSummaryContent();
+    }
+
+    @Override
+    public String getSummaryDirection() {
+        return this.decoded().getSummaryDirection();
+    }
+
+    @Override
+    public Date getPublishedDate() {
+        return new Date(published);
+    }
+
+    @Override
+    long getPublishedTime() {
+        return published;
+    }
+
+    @Override
+    public boolean hasVisual() {
+        return this.decoded().hasVisual();
+    }
+
+    @Override
+    public String getVisualUrl() {
+        return this.decoded().getVisualUrl();
+    }
+
+    @Override
+    public int getVisualWidth() {
+        return this.decoded().getVisualWidth();
+    }
+
+    @Override
+    public int getVisualHeight() {
+        return this.decoded().getVisualHeight();
+    }
+
+    @Override
+    public String getVisualContentType() {
+        return this.decoded().getVisualContentType();
+    }
+
+    @Override
+    public boolean isUnread() {
+        return unread;
+    }
+
+    @Override
+    public ArrayList<String> getCategoryIds() {
+        return this.decoded().getCategoryIds();
+    }
+
+    @Override
+    List<String> getCategoryIdList() {
+        return this.decoded().getCategoryIdList();
+    }
+
+    @Override
+    public Entry withUnread(boolean unread) {
+        if(unread == this.unread) {
+            return this;
+        }
+
+        return this.decoded().withUnread(unread);
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return new JSONObject(json);
+    }
+
+    @Override
+    public String toJSONString() {
+        return json;
+    }
+
+    /**
+     * Create a new lazy entry
+     * @param json the JSON text of one entry in the format of the feedly API
+     * @param dictionary used for the origin and category IDs when the entry is decoded, may be null
+     * @throws JSONException if the text isn't an object or a required field is missing
+     */
+    static LazyEntry parse(String json, IdDictionary dictionary) {
+        Scanner scanner = new Scanner(json);
+
+        String id = null;
+        long crawled = 0;
+        long published = 0;
+        boolean unread = false;
+        int found = 0;
+
+        scanner.expect('{');
+
+        if(!scanner.skipIf('}')) {
+            do {
+                String key = scanner.nextString();
+
+                scanner.expect(':');
+
+                if(key.equals("id")) {
+                    id = scanner.nextString();
+                    found |= 1;
+                } else if(key.equals("crawled")) {
+                    crawled = scanner.nextLong();
+                    found |= 2;
+                } else if(key.equals("published")) {
+                    published = scanner.nextLong();
+                    found |= 4;
+                } else if(key.equals("unread")) {
+                    unread = scanner.nextBoolean();
+                    found |= 8;
+                } else {
+                    scanner.skipValue();
+                }
+            } while(scanner.skipIf(','));
+
+            scanner.expect('}');
+        }
+
+        if(found != 15) {
+            throw new JSONException("jfeedly: entry without id, crawled, published or unread: " + json);
+        }
+
+        return new LazyEntry(json, id, crawled, published, unread, dictionary);
+    }
+
+    /** Minimal scanner for the top level of a JSON object, nested values are skipped without decoding */
+    private static class Scanner {
+
+        private String text;
+        private int position = 0;
+
+        Scanner(String text) {
+            this.text = text;
+        }
+
+        private char peek() {
+            while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+
+            if(position >= text.length()) {
+                throw this.error("Unexpected end");
+            }
+
+            return text.charAt(position);
+        }
+
+        void expect(char c) {
+            if(this.peek() != c) {
+                throw this.error("Expected '" + c + "'");
+            }
+
+            position++;
+        }
+
+        boolean skipIf(char c) {
+            if(this.peek() == c) {
+                position++;
+                return true;
+            }
+
+            return false;
+        }
+
+        String nextString() {
+            this.expect('"');
+
+            StringBuilder builder = null;
+            int start = position;
+
+            while(position < text.length()) {
+                char c = text.charAt(position++);
+
+                if(c == '"') {
+                    return builder == null ? text.substring(start, position - 1) : builder.toString();
+                }
+
+                if(c == '\\') {
+                    if(builder == null) {
+                        builder = new StringBuilder(text.substring(start, position - 1));
+                    }
+
+                    builder.append(this.nextEscaped());
+                } else if(builder != null) {
+                    builder.append(c);
+                }
+            }
+
+            throw this.error("Unterminated string");
+        }
+
+        private char nextEscaped() {
+            if(position >= text.length()) {
+                throw this.error("Unterminated string");
+            }
+
+            char c = text.charAt(position++);
+
+            switch(c) {
+                case 'b':
+                    return '\b';
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'f':
+                    return '\f';
+                case 'r':
+                    return '\r';
+                case 'u':
+                    if(position + 4 > text.length()) {
+                        throw this.error("Illegal escape");
+                    }
+
+                    try {
+                        char unicode = (char) Integer.parseInt(text.substring(position, position + 4), 16);
+                        position += 4;
+                        return unicode;
+                    } catch(NumberFormatException ex) {
+                        throw this.error("Illegal escape");
+                    }
+                default:
+                    return c;
+            }
+        }
+
+        long nextLong() {
+            this.peek();
+
+            int start = position;
+
+            while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) != -1) {
+                position++;
+            }
+
+            try {
+                return Long.parseLong(text.substring(start, position));
+            } catch(NumberFormatException ex) {
+                try {
+                    return (long) Double.parseDouble(text.substring(start, position));
+                } catch(NumberFormatException ex2) {
+                    throw this.error("Expected a number");
+                }
+            }
+        }
+
+        boolean nextBoolean() {
+            this.peek();
+
+            if(text.startsWith("true", position)) {
+                position += 4;
+                return true;
+            }
+
+            if(text.startsWith("false", position)) {
+                position += 5;
+                return false;
+            }
+
+            throw this.error("Expected a boolean");
+        }
+
+        void skipValue() {
+            char c = this.peek();
+
+            if(c == '"') {
+                this.skipString();
+            } else if(c == '{' || c == '[') {
+                int depth = 0;
+
+                do {
+                    c = text.charAt(position);
+
+                    if(c == '"') {
+                        this.skipString();
+                        continue;
+                    }
+
+                    if(c == '{' || c == '[') {
+                        depth++;
+                    } else if(c == '}' || c == ']') {
+                        depth--;
+                    }
+
+                    position++;
+                } while(depth > 0 && position < text.length());
+
+                if(depth > 0) {
+                    throw this.error("Unexpected end");
+                }
+            } else {
+                // number, true, false or null
+                while(position < text.length() && ",}] \t\r\n".indexOf(text.charAt(position)) == -1) {
+                    position++;
+                }
+            }
+        }
+
+        private void skipString() {
+            position++;
+
+            while(position < text.length()) {
+                char c = text.charAt(position++);
+
+                if(c == '"') {
+                    return;
+                }
+
+                if(c == '\\') {
+                    position++;
+                }
+            }
+
+            throw this.error("Unterminated string");
+        }
+
+        private JSONException error(String message) {
+            return new JSONException("jfeedly: " + message + " at character " + position + " of an entry");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Representation model of the "/v3/markers/reads" API call, the read state changes since a point in time
+ * @author Christopher Kaster
+ */
+public class ReadOperations {
+
+    private HashSet<String> readEntryIds;
+    private HashSet<String> unreadEntryIds;
+    private HashMap<String, Long> readFeeds;
+    private HashMap<String, Long> readCategories;
+
+    // entries crawled after this can't be affected by the feeds and categories which were marked as read
+    private long latestAsOf = Long.MIN_VALUE;
+
+    private ReadOperations(HashSet<String> readEntryIds, HashSet<String> unreadEntryIds,
+                           HashMap<String, Long> readFeeds, HashMap<String, Long> readCategories) {
+        this.readEntryIds = readEntryIds;
+        this.unreadEntryIds = unreadEntryIds;
+        this.readFeeds = readFeeds;
+        this.readCategories = readCategories;
+
+        for(Long asOf : readFeeds.values()) {
+            latestAsOf = Math.max(latestAsOf, asOf);
+        }
+
+        for(Long asOf : readCategories.values()) {
+            latestAsOf = Math.max(latestAsOf, asOf);
+        }
+    }
+
+    /** Returns the IDs of the entries which were marked as read */
+    public HashSet<String> getReadEntryIds() {
+        return readEntryIds;
+    }
+
+    /** Returns the IDs of the entries which were marked as unread */
+    public HashSet<String> getUnreadEntryIds() {
+        return unreadEntryIds;
+    }
+
+    /** Returns the feeds which were marked as read (feed id => all entries crawled until then are read) */
+    public HashMap<String, Long> getReadFeeds() {
+        return readFeeds;
+    }
+
+    /** Returns the categories which were marked as read (category id => all entries crawled until then are read) */
+    public HashMap<String, Long> getReadCategories() {
+        return readCategories;
+    }
+
+    /** Are there no changes at all? */
+    public boolean isEmpty() {
+        return readEntryIds.isEmpty() && unreadEntryIds.isEmpty() && readFeeds.isEmpty() && readCategories.isEmpty();
+    }
+
+    /**
+     * Returns the read state of an entry after these operations
+     * @param entry the entry before these operations
+     * @return true if the entry is unread
+     */
+    public boolean isUnread(Entry entry) {
+        if(unreadEntryIds.contains(entry.getId())) {
+            return true;
+        }
+
+        if(!entry.isUnread() || readEntryIds.contains(entry.getId())) {
+            return false;
+        }
+
+        // origin and categories are only looked up if needed, they fully decode lazy entries
+        long crawled = entry.getCrawledTime();
+
+        if(crawled > latestAsOf) {
+            return true;
+        }
+
+        if(!readFeeds.isEmpty()) {
+            Long feedAsOf = readFeeds.get(entry.getOriginId());
+
+            if(feedAsOf != null && crawled <= feedAsOf) {
+                return false;
+            }
+        }
+
+        if(!readCategories.isEmpty()) {
+            for(String categoryId : entry.getCategoryIdList()) {
+                Long categoryAsOf = readCategories.get(categoryId);
+
+                if(categoryAsOf != null && crawled <= categoryAsOf) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /** Create new ReadOperations from a given JSON object */
+    public static ReadOperations fromJSONObject(JSONObject object) {
+        return new ReadOperations(getIds(object, "entries"), getIds(object, "unread"),
+                getAsOf(object, "feeds"), getAsOf(object, "categories"));
+    }
+
+    private static HashSet<String> getIds(JSONObject object, String key) {
+        HashSet<String> ids = new HashSet<String>();
+
+        if(object.has(key)) {
+            JSONArray array = object.getJSONArray(key);
+
+            for(int i = 0; i < array.length(); i++) {
+                ids.add(array.getString(i));
+            }
+        }
+
+        return ids;
+    }
+
+    private static HashMap<String, Long> getAsOf(JSONObject object, String key) {
+        HashMap<String, Long> asOf = new HashMap<String, Long>();
+
+        if(object.has(key)) {
+            JSONArray array = object.getJSONArray(key);
+
+            for(int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+
+                asOf.put(item.getString("id"), item.getLong("asOf"));
+            }
+        }
+
+        return asOf;
+    }
+}
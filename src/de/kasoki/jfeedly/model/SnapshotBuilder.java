@@ -0,0 +1,98 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import java.util.function.Function;
+
+/**
+ * Copy-on-write list behind the builders of the immutable snapshots: the list of the snapshot the builder
+ * started from is only copied when it is changed for the first time, and build() hands the list over to the new
+ * snapshot without copying it again.
+ * @author Christopher Kaster
+ */
+class SnapshotBuilder<T> {
+
+    private IndexedList<T> elements;
+    private Function<T, String> idFunction;
+
+    // is the list still used by a snapshot?
+    private boolean shared;
+
+    SnapshotBuilder(IndexedList<T> elements, Function<T, String> idFunction) {
+        this.elements = elements;
+        this.idFunction = idFunction;
+        this.shared = true;
+    }
+
+    /** Add an element at the end */
+    void add(T element) {
+        this.writable().add(element);
+    }
+
+    /** Replace the element with the same ID or add it at the end if there is none */
+    void put(T element) {
+        int index = this.indexOf(idFunction.apply(element));
+
+        if(index == -1) {
+            this.add(element);
+        } else {
+            this.writable().set(index, element);
+        }
+    }
+
+    /** Remove the element with the given ID, returns false if there is none */
+    boolean remove(String id) {
+        int index = this.indexOf(id);
+
+        if(index == -1) {
+            return false;
+        }
+
+        this.writable().remove(index);
+
+        return true;
+    }
+
+    /** Returns the element with the given ID, null if there is none */
+    T get(String id) {
+        return elements.getById(id);
+    }
+
+    /** Returns the number of elements */
+    int size() {
+        return elements.size();
+    }
+
+    /** Returns the list for a new snapshot, the builder copies it again before the next change */
+    IndexedList<T> build() {
+        shared = true;
+
+        return elements;
+    }
+
+    private int indexOf(String id) {
+        return elements.indexOfId(id);
+    }
+
+    private IndexedList<T> writable() {
+        if(shared) {
+            elements = new IndexedList<T>(elements, idFunction);
+            shared = false;
+        }
+
+        return elements;
+    }
+}
@@ -33,6 +33,7 @@ public class Subscription {
     private Date updated;
     private String website;
     private ArrayList<String> categoryIds;
+    private boolean immutable = false;
 
     private Subscription(String id, String title, double velocity, Date updated, String website, ArrayList<String> categoryIds) {
         this.id = id;
@@ -53,8 +54,10 @@ public class Subscription {
         return title;
     }
 
-    /** Set a new title for this subscription */
+    /** Set a new title for this subscription (not possible if it's immutable, change a copy() instead) */
     public void setTitle(String title) {
+        this.checkMutable();
+
         this.title = title;
     }
 
@@ -65,7 +68,7 @@ public class Subscription {
 
     /** Get the date this was last updated */
     public Date getUpdatedDate() {
-        return updated;
+        return immutable ? new Date(updated.getTime()) : updated;
     }
 
     /** Get the website of this subscription */
@@ -73,21 +76,55 @@ public class Subscription {
         return website;
     }
 
-    /** Get the associated category ids */
+    /** Get the associated category ids (a copy if this subscription is immutable) */
     public ArrayList<String> getCategoryIds() {
-        return this.categoryIds;
+        return immutable ? new ArrayList<String>(this.categoryIds) : this.categoryIds;
     }
 
-    /** Add a new category to this subscription */
+    /** Add a new category to this subscription (not possible if it's immutable, change a copy() instead) */
     public void addCategory(Category category) {
+        this.checkMutable();
+
         this.categoryIds.add(category.getCategoryId());
     }
 
-    /** Remove a category from this subscription */
+    /** Remove a category from this subscription (not possible if it's immutable, change a copy() instead) */
     public void removeCategory(Category category) {
+        this.checkMutable();
+
         this.categoryIds.remove(category.getCategoryId());
     }
 
+    /** Is this subscription immutable? Subscriptions of a Subscriptions snapshot are. */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    /** Returns a mutable copy of this subscription */
+    public Subscription copy() {
+        return new Subscription(id, title, velocity, new Date(updated.getTime()), website,
+                new ArrayList<String>(categoryIds));
+    }
+
+    /** Returns an immutable copy of this subscription, an immutable subscription returns itself */
+    Subscription toImmutable() {
+        if(immutable) {
+            return this;
+        }
+
+        Subscription subscription = this.copy();
+
+        subscription.immutable = true;
+
+        return subscription;
+    }
+
+    private void checkMutable() {
+        if(immutable) {
+            throw new UnsupportedOperationException("jfeedly: this subscription is immutable, change a copy()");
+        }
+    }
+
     /** save changes to this subscription to the servers */
     public void update(JFeedly handler) {
         Categories userCategories = handler.getCategories();
@@ -123,32 +160,24 @@ public class Subscription {
 
     /** get the newest article in this subscription */
     public Entry getNewestEntry(JFeedly handler) {
-        Entries entries = this.getEntries(handler);
-
-        entries.sortByDateNewestFirst();
-
-        if(entries.getNumberOfEntries() > 0) {
-            return entries.get(0);
-        } else {
-            return null;
-        }
+        return handler.getNewestEntry(this.getId());
     }
 
     /** get the oldest article in this subscription */
     public Entry getOldestEntry(JFeedly handler) {
-        Entries entries = this.getEntries(handler);
-
-        entries.sortByDateOldestFirst();
-
-        if(entries.getNumberOfEntries() > 0) {
-            return entries.get(0);
-        } else {
-            return null;
-        }
+        return handler.getOldestEntry(this.getId());
     }
 
     /** Create a new subscription from the given JSON object */
     public static Subscription fromJSONObject(JSONObject object) {
+        return fromJSONObject(object, null);
+    }
+
+    /**
+     * Create a new Subscription from a given JSON object
+     * @param dictionary The subscription and category IDs are canonicalized with this dictionary, may be null
+     */
+    public static Subscription fromJSONObject(JSONObject object, IdDictionary dictionary) {
         Date updatedDate = new Date(object.getLong("updated"));
 
         ArrayList<String> categoryIds = new ArrayList<String>();
@@ -158,10 +187,10 @@ public class Subscription {
         for(int i = 0; i < array.length(); i++) {
             JSONObject category = array.getJSONObject(i);
 
-            categoryIds.add(category.getString("id"));
+            categoryIds.add(IdDictionary.intern(dictionary, category.getString("id")));
         }
 
-        return new Subscription(object.getString("id"), object.getString("title"), object.getDouble("velocity"),
-                updatedDate, object.getString("website"), categoryIds);
+        return new Subscription(IdDictionary.intern(dictionary, object.getString("id")), object.getString("title"),
+                object.getDouble("velocity"), updatedDate, object.getString("website"), categoryIds);
     }
 }
@@ -19,21 +19,37 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.function.Function;
 
 /**
  * Representation model of the "/v3/subscriptions" api call
  * @author Christopher Kaster
  */
 public class Subscriptions implements Iterable<Subscription> {
-    private ArrayList<Subscription> subscriptions;
+    private static final Function<Subscription, String> ID = new Function<Subscription, String>() {
+        @Override
+        public String apply(Subscription s) {
+            return s.getId();
+        }
+    };
+
+    private IndexedList<Subscription> subscriptions;
+    private boolean snapshot;
 
     private Subscriptions(ArrayList<Subscription> subscriptions) {
+        this(new IndexedList<Subscription>(subscriptions, ID), false);
+    }
+
+    private Subscriptions(IndexedList<Subscription> subscriptions, boolean snapshot) {
         this.subscriptions = subscriptions;
+        this.snapshot = snapshot;
     }
 
     public Iterator<Subscription> iterator() {
-        return subscriptions.iterator();
+        return snapshot ? Collections.unmodifiableList(subscriptions).iterator() : subscriptions.iterator();
     }
 
     /** Returns the number of subscriptions in this collection */
@@ -48,23 +64,109 @@ public class Subscriptions implements Iterable<Subscription> {
 
     /** Get a subscription by ID */
     public Subscription getById(String id) {
-        for(Subscription s : this.subscriptions) {
-            if(s.getId().equals(id)) {
-                return s;
-            }
+        return this.subscriptions.getById(id);
+    }
+
+    /** Get subscriptions by ID (in the same order), IDs which aren't in this collection are skipped */
+    public ArrayList<Subscription> getByIds(Collection<String> ids) {
+        return this.subscriptions.getByIds(ids);
+    }
+
+    /** Is this an immutable snapshot? */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns an immutable snapshot of this collection, a snapshot returns itself. The subscriptions of a snapshot
+     * are immutable as well.
+     */
+    public Subscriptions snapshot() {
+        if(snapshot) {
+            return this;
+        }
+
+        ArrayList<Subscription> copies = new ArrayList<Subscription>(subscriptions.size());
+
+        for(Subscription subscription : subscriptions) {
+            copies.add(subscription.toImmutable());
+        }
+
+        return new Subscriptions(new IndexedList<Subscription>(copies, ID), true);
+    }
+
+    /** Returns a builder which creates changed snapshots of this collection */
+    public Builder toBuilder() {
+        return new Builder(this.snapshot().subscriptions);
+    }
+
+    /** Returns a builder for a new snapshot */
+    public static Builder builder() {
+        return new Builder(new IndexedList<Subscription>(new ArrayList<Subscription>(), ID));
+    }
+
+    /**
+     * Builds immutable Subscriptions snapshots. The subscriptions of the snapshot the builder was created from
+     * are only copied with the first change. This class is not thread-safe.
+     */
+    public static class Builder {
+
+        private SnapshotBuilder<Subscription> subscriptions;
+
+        private Builder(IndexedList<Subscription> subscriptions) {
+            this.subscriptions = new SnapshotBuilder<Subscription>(subscriptions, ID);
+        }
+
+        /** Add a subscription at the end */
+        public Builder add(Subscription subscription) {
+            subscriptions.add(subscription.toImmutable());
+            return this;
+        }
+
+        /** Replace the subscription with the same ID, or add it at the end */
+        public Builder put(Subscription subscription) {
+            subscriptions.put(subscription.toImmutable());
+            return this;
         }
 
-        return null;
+        /** Remove the subscription with the given ID */
+        public Builder remove(String id) {
+            subscriptions.remove(id);
+            return this;
+        }
+
+        /** Returns the subscription with the given ID, null if there is none */
+        public Subscription get(String id) {
+            return subscriptions.get(id);
+        }
+
+        /** Returns the number of subscriptions */
+        public int size() {
+            return subscriptions.size();
+        }
+
+        /** Create a new snapshot, the builder may be used for further changes afterwards */
+        public Subscriptions build() {
+            return new Subscriptions(subscriptions.build(), true);
+        }
     }
 
     /** Create a new Subscriptions wrapper from a given JSON array */
     public static Subscriptions fromJSONArray(JSONArray array) {
+        return fromJSONArray(array, null);
+    }
+
+    /**
+     * Create a new Subscriptions wrapper from a given JSON array
+     * @param dictionary The subscription and category IDs are canonicalized with this dictionary, may be null
+     */
+    public static Subscriptions fromJSONArray(JSONArray array, IdDictionary dictionary) {
         ArrayList<Subscription> subscriptions = new ArrayList<Subscription>();
 
         for(int i = 0; i < array.length(); i++) {
             JSONObject object = array.getJSONObject(i);
 
-            subscriptions.add(Subscription.fromJSONObject(object));
+            subscriptions.add(Subscription.fromJSONObject(object, dictionary));
         }
 
         return new Subscriptions(subscriptions);
@@ -19,21 +19,37 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.function.Function;
 
 /**
  * Representation model of the "/v3/tags" api calls
  * @author Christopher Kaster
  */
 public class Tags implements Iterable<Tag> {
-    private ArrayList<Tag> tags;
+    private static final Function<Tag, String> ID = new Function<Tag, String>() {
+        @Override
+        public String apply(Tag t) {
+            return t.getId();
+        }
+    };
+
+    private IndexedList<Tag> tags;
+    private boolean snapshot;
 
     private Tags(ArrayList<Tag> tags) {
+        this(new IndexedList<Tag>(tags, ID), false);
+    }
+
+    private Tags(IndexedList<Tag> tags, boolean snapshot) {
         this.tags = tags;
+        this.snapshot = snapshot;
     }
 
     public Iterator<Tag> iterator() {
-        return tags.iterator();
+        return snapshot ? Collections.unmodifiableList(tags).iterator() : tags.iterator();
     }
 
     /** Return the number of tags in this collection */
@@ -48,13 +64,78 @@ public class Tags implements Iterable<Tag> {
 
     /** Get a specific Tag by ID */
     public Tag getById(String id) {
-        for(Tag t : this.tags) {
-            if(t.getId().equals(id)) {
-                return t;
-            }
+        return this.tags.getById(id);
+    }
+
+    /** Get tags by ID (in the same order), IDs which aren't in this collection are skipped */
+    public ArrayList<Tag> getByIds(Collection<String> ids) {
+        return this.tags.getByIds(ids);
+    }
+
+    /** Is this an immutable snapshot? */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /** Returns an immutable snapshot of this collection, a snapshot returns itself */
+    public Tags snapshot() {
+        return snapshot ? this : new Tags(new IndexedList<Tag>(tags, ID), true);
+    }
+
+    /** Returns a builder which creates changed snapshots of this collection */
+    public Builder toBuilder() {
+        return new Builder(this.snapshot().tags);
+    }
+
+    /** Returns a builder for a new snapshot */
+    public static Builder builder() {
+        return new Builder(new IndexedList<Tag>(new ArrayList<Tag>(), ID));
+    }
+
+    /**
+     * Builds immutable Tags snapshots. The tags of the snapshot the builder was created from
+     * are only copied with the first change. This class is not thread-safe.
+     */
+    public static class Builder {
+
+        private SnapshotBuilder<Tag> tags;
+
+        private Builder(IndexedList<Tag> tags) {
+            this.tags = new SnapshotBuilder<Tag>(tags, ID);
+        }
+
+        /** Add a tag at the end */
+        public Builder add(Tag tag) {
+            tags.add(tag);
+            return this;
+        }
+
+        /** Replace the tag with the same ID, or add it at the end */
+        public Builder put(Tag tag) {
+            tags.put(tag);
+            return this;
         }
 
-        return null;
+        /** Remove the tag with the given ID */
+        public Builder remove(String id) {
+            tags.remove(id);
+            return this;
+        }
+
+        /** Returns the tag with the given ID, null if there is none */
+        public Tag get(String id) {
+            return tags.get(id);
+        }
+
+        /** Returns the number of tags */
+        public int size() {
+            return tags.size();
+        }
+
+        /** Create a new snapshot, the builder may be used for further changes afterwards */
+        public Tags build() {
+            return new Tags(tags.build(), true);
+        }
     }
 
     /** Create a new Tags wrapper from a given JSON array */
@@ -0,0 +1,102 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The entries of a list ordered by their published or crawled time, so all entries of a time range can be found
+ * with a binary search. The index doesn't change after it was built.
+ * @author Christopher Kaster
+ */
+class TimeIndex {
+
+    private int version;
+    private Entry[] entries;
+    private long[] times;
+
+    private TimeIndex(int version, Entry[] entries, long[] times) {
+        this.version = version;
+        this.entries = entries;
+        this.times = times;
+    }
+
+    /** Returns the version of the list this index was built from */
+    int getVersion() {
+        return version;
+    }
+
+    /** Returns the entries with a time in [from, to), the oldest first */
+    ArrayList<Entry> between(long from, long to) {
+        int start = this.lowerBound(from);
+        int end = Math.max(start, this.lowerBound(to));
+
+        return new ArrayList<Entry>(Arrays.asList(entries).subList(start, end));
+    }
+
+    /** Returns the position of the first entry with a time >= the given time */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = times.length;
+
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+
+            if(times[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Build a new index
+     * @param list the entries
+     * @param version the version of the list
+     * @param byCrawled order by the crawled instead of the published time
+     */
+    static TimeIndex build(List<Entry> list, int version, final boolean byCrawled) {
+        Entry[] entries = list.toArray(new Entry[list.size()]);
+
+        Arrays.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                long timeA = getTime(a, byCrawled);
+                long timeB = getTime(b, byCrawled);
+
+                return timeA < timeB ? -1 : (timeA == timeB ? 0 : 1);
+            }
+        });
+
+        long[] times = new long[entries.length];
+
+        for(int i = 0; i < entries.length; i++) {
+            times[i] = getTime(entries[i], byCrawled);
+        }
+
+        return new TimeIndex(version, entries, times);
+    }
+
+    private static long getTime(Entry entry, boolean byCrawled) {
+        return byCrawled ? entry.getCrawledTime() : entry.getPublishedTime();
+    }
+}
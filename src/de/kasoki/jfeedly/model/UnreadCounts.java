@@ -0,0 +1,101 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Representation model of the "/v3/markers/counts" API call, a snapshot of the unread counts of all feeds,
+ * categories and tags indexed by their ID
+ * @author Christopher Kaster
+ */
+public class UnreadCounts {
+
+    private HashMap<String, Integer> counts;
+
+    private UnreadCounts(HashMap<String, Integer> counts) {
+        this.counts = counts;
+    }
+
+    /** Returns the number of unread articles for an ID (may be a feed, subscription, category or tag), -1 if unknown */
+    public int getCount(String id) {
+        Integer count = counts.get(id);
+
+        return count != null ? count : -1;
+    }
+
+    /** Returns the number of unread articles of a category, -1 if unknown */
+    public int getCount(Category category) {
+        return this.getCount(category.getCategoryId());
+    }
+
+    /** Returns the number of unread articles of a subscription, -1 if unknown */
+    public int getCount(Subscription subscription) {
+        return this.getCount(subscription.getId());
+    }
+
+    /** Is there a count for the given ID? */
+    public boolean contains(String id) {
+        return counts.containsKey(id);
+    }
+
+    /** Returns the number of unread articles for every subscription (subscription id => count, -1 if unknown) */
+    public HashMap<String, Integer> getCounts(Subscriptions subscriptions) {
+        HashMap<String, Integer> result = new HashMap<String, Integer>();
+
+        for(Subscription subscription : subscriptions) {
+            result.put(subscription.getId(), this.getCount(subscription));
+        }
+
+        return result;
+    }
+
+    /** Returns the number of unread articles for every category (category id => count, -1 if unknown) */
+    public HashMap<String, Integer> getCounts(Categories categories) {
+        HashMap<String, Integer> result = new HashMap<String, Integer>();
+
+        for(Category category : categories) {
+            result.put(category.getCategoryId(), this.getCount(category));
+        }
+
+        return result;
+    }
+
+    /** Returns all IDs of this snapshot (read-only, the snapshot may be shared) */
+    public Set<String> getIds() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    /** Create a new snapshot from a given JSON object */
+    public static UnreadCounts fromJSONObject(JSONObject object) {
+        JSONArray unreadcounts = object.getJSONArray("unreadcounts");
+
+        HashMap<String, Integer> counts = new HashMap<String, Integer>(unreadcounts.length() * 2);
+
+        for(int i = 0; i < unreadcounts.length(); i++) {
+            JSONObject unread = unreadcounts.getJSONObject(i);
+
+            counts.put(unread.getString("id"), unread.getInt("count"));
+        }
+
+        return new UnreadCounts(counts);
+    }
+}
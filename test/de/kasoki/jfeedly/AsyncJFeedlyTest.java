@@ -0,0 +1,181 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import de.kasoki.jfeedly.helper.HTTPRequest;
+import de.kasoki.jfeedly.helper.HTTPResponse;
+import de.kasoki.jfeedly.helper.HTTPTransport;
+import de.kasoki.jfeedly.model.Entries;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncJFeedlyTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File directory;
+    private JFeedly handler;
+    private AtomicInteger mgetRequests;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jfeedly", "config");
+        directory.delete();
+        directory.mkdirs();
+
+        FileWriter writer = new FileWriter(new File(directory, "connection.properties"));
+
+        try {
+            writer.write("access_token=a\nrefresh_token=r\nplan=standard\ntoken_type=t\nid=1\nexpire_date=" +
+                    (System.currentTimeMillis() + 60 * 60 * 1000) + "\n");
+        } finally {
+            writer.close();
+        }
+
+        mgetRequests = new AtomicInteger();
+
+        handler = JFeedly.createHandler("client", "secret");
+        handler.setConfigPath(directory.getPath());
+        handler.authenticate();
+        handler.setTransport(new FakeTransport());
+    }
+
+    @After
+    public void tearDown() {
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+
+    @Test
+    public void loadsChunkedEntriesFromManyConcurrentRequests() throws Exception {
+        AsyncJFeedly async = AsyncJFeedly.fromHandler(handler);
+
+        // more requests than the shared executor has threads on Java < 21, each one is split into 4 chunks
+        int numberOfRequests = AsyncJFeedly.SHARED_EXECUTOR_THREADS + 8;
+
+        ArrayList<CompletableFuture<Entries>> futures = new ArrayList<CompletableFuture<Entries>>();
+
+        for(int i = 0; i < numberOfRequests; i++) {
+            futures.add(async.getEntriesFor("feed/" + i, false, true, 1000));
+        }
+
+        for(int i = 0; i < numberOfRequests; i++) {
+            Entries entries = futures.get(i).get(30, TimeUnit.SECONDS);
+
+            assertEquals(1000, entries.getNumberOfEntries());
+            assertEquals("feed/" + i + "/0", entries.get(0).getId());
+            assertEquals("feed/" + i + "/999", entries.get(999).getId());
+        }
+
+        assertEquals(numberOfRequests * 4, mgetRequests.get());
+    }
+
+    /** Answers stream ID and .mget requests without a server */
+    private class FakeTransport implements HTTPTransport {
+
+        @Override
+        public HTTPResponse execute(HTTPRequest request) throws IOException {
+            String url = request.getUrl();
+            String body;
+
+            if(url.contains("/v3/streams/ids")) {
+                String streamId = getParameter(url, "streamId");
+                int count = Integer.parseInt(getParameter(url, "count"));
+
+                JSONArray ids = new JSONArray();
+
+                for(int i = 0; i < count; i++) {
+                    ids.put(streamId + "/" + i);
+                }
+
+                JSONObject object = new JSONObject();
+                object.put("ids", ids);
+
+                body = object.toString();
+            } else if(url.contains("/v3/entries/.mget")) {
+                mgetRequests.incrementAndGet();
+
+                JSONArray ids = new JSONArray(new String(request.getBody(), UTF_8));
+                JSONArray entries = new JSONArray();
+
+                for(int i = 0; i < ids.length(); i++) {
+                    JSONObject origin = new JSONObject();
+                    origin.put("streamId", "feed/1");
+
+                    JSONObject entry = new JSONObject();
+                    entry.put("id", ids.getString(i));
+                    entry.put("fingerprint", "f");
+                    entry.put("origin", origin);
+                    entry.put("crawled", 1000);
+                    entry.put("published", 1000);
+                    entry.put("unread", true);
+                    entry.put("title", "Title");
+                    entry.put("categories", new JSONArray());
+
+                    entries.put(entry);
+                }
+
+                // keep the outer requests busy, so they all wait for their chunks at the same time
+                try {
+                    Thread.sleep(20);
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+
+                body = entries.toString();
+            } else {
+                return new HTTPResponse(404, new HashMap<String, String>(), new ByteArrayInputStream(new byte[0]));
+            }
+
+            return new HTTPResponse(200, new HashMap<String, String>(),
+                    new ByteArrayInputStream(body.getBytes(UTF_8)));
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to close
+        }
+
+        private String getParameter(String url, String name) {
+            for(String parameter : url.substring(url.indexOf('?') + 1).split("&")) {
+                if(parameter.startsWith(name + "=")) {
+                    return parameter.substring(name.length() + 1);
+                }
+            }
+
+            return null;
+        }
+    }
+}
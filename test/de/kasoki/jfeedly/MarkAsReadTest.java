@@ -0,0 +1,151 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import de.kasoki.jfeedly.helper.HTTPRequest;
+import de.kasoki.jfeedly.helper.HTTPResponse;
+import de.kasoki.jfeedly.helper.HTTPTransport;
+import de.kasoki.jfeedly.model.Feed;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MarkAsReadTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File directory;
+    private JFeedly handler;
+    private List<String> markers;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jfeedly", "config");
+        directory.delete();
+        directory.mkdirs();
+
+        FileWriter writer = new FileWriter(new File(directory, "connection.properties"));
+
+        try {
+            writer.write("access_token=a\nrefresh_token=r\nplan=standard\ntoken_type=t\nid=1\nexpire_date=" +
+                    (System.currentTimeMillis() + 60 * 60 * 1000) + "\n");
+        } finally {
+            writer.close();
+        }
+
+        markers = Collections.synchronizedList(new ArrayList<String>());
+
+        handler = JFeedly.createHandler("client", "secret");
+        handler.setConfigPath(directory.getPath());
+        handler.authenticate();
+        handler.setTransport(new FakeTransport());
+    }
+
+    @After
+    public void tearDown() {
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+
+    @Test
+    public void sendsNewestUnreadEntryAsLastRead() {
+        handler.markAsRead(createFeed("feed/1"));
+
+        assertEquals(1, markers.size());
+
+        JSONObject marker = new JSONObject(markers.get(0));
+
+        assertEquals("markAsRead", marker.getString("action"));
+        assertEquals("feeds", marker.getString("type"));
+        assertEquals("feed/1", marker.getJSONArray("feedIds").getString(0));
+        assertEquals("feed/1/unread", marker.getString("lastReadEntryId"));
+    }
+
+    @Test
+    public void sendsNoLastReadEntryWithoutUnreadEntries() {
+        handler.markAsRead(createFeed("feed/2"));
+
+        assertEquals(1, markers.size());
+        assertFalse(new JSONObject(markers.get(0)).has("lastReadEntryId"));
+    }
+
+    private static Feed createFeed(String id) {
+        JSONObject object = new JSONObject();
+
+        object.put("id", id);
+        object.put("title", "Title");
+        object.put("website", "http://example.com");
+        object.put("velocity", 1.0);
+        object.put("language", "en");
+        object.put("subscribers", 1);
+
+        return Feed.fromJSONObject(object);
+    }
+
+    /** feed/1 has an unread and a newer read entry, feed/2 only a read entry */
+    private class FakeTransport implements HTTPTransport {
+
+        @Override
+        public HTTPResponse execute(HTTPRequest request) throws IOException {
+            String url = request.getUrl();
+            String body = "";
+
+            if(url.contains("/v3/streams/ids")) {
+                boolean unreadOnly = url.contains("unreadOnly=true");
+                String streamId = url.substring(url.indexOf("streamId=") + 9, url.indexOf('&'));
+
+                JSONArray ids = new JSONArray();
+
+                if(unreadOnly && streamId.equals("feed/1")) {
+                    ids.put("feed/1/unread");
+                } else if(!unreadOnly) {
+                    ids.put(streamId + "/read");
+                }
+
+                body = new JSONObject().put("ids", ids).toString();
+            } else if(url.contains("/v3/markers")) {
+                markers.add(new String(request.getBody(), UTF_8));
+            } else {
+                return new HTTPResponse(404, new HashMap<String, String>(), new ByteArrayInputStream(new byte[0]));
+            }
+
+            return new HTTPResponse(200, new HashMap<String, String>(),
+                    new ByteArrayInputStream(body.getBytes(UTF_8)));
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to close
+        }
+    }
+}
@@ -0,0 +1,235 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MarkerQueueTest {
+
+    private FakeHandler handler;
+    private MarkerQueue queue;
+
+    @Before
+    public void setUp() {
+        handler = new FakeHandler();
+        queue = new MarkerQueue(handler);
+    }
+
+    @After
+    public void tearDown() {
+        handler.release();
+        queue.close();
+    }
+
+    @Test
+    public void sendsOneRequestPerAction() {
+        queue.setFlushInterval(60000);
+
+        queue.add("e1", MarkerQueue.Action.READ);
+        queue.add("e2", MarkerQueue.Action.READ);
+        queue.add("e3", MarkerQueue.Action.SAVED);
+        queue.add("e1", MarkerQueue.Action.UNREAD);
+
+        assertEquals(3, queue.getNumberOfPendingMarkers());
+        assertTrue(queue.flush());
+
+        assertEquals(Arrays.asList("markAsRead [e2]", "keepUnread [e1]", "markAsSaved [e3]"), handler.getSent());
+        assertEquals(3, queue.getNumberOfSentMarkers());
+        assertEquals(0, queue.getNumberOfPendingMarkers());
+    }
+
+    @Test
+    public void flushesAfterTheInterval() throws InterruptedException {
+        queue.setFlushInterval(50);
+
+        queue.add("e1", MarkerQueue.Action.READ);
+
+        assertTrue(handler.awaitSent(1));
+        assertEquals(Arrays.asList("markAsRead [e1]"), handler.getSent());
+    }
+
+    @Test
+    public void flushesFullBatchRightAway() throws InterruptedException {
+        queue.setFlushInterval(60000);
+        queue.setMaxBatchSize(2);
+
+        queue.add("e1", MarkerQueue.Action.READ);
+        queue.add("e2", MarkerQueue.Action.READ);
+
+        assertTrue(handler.awaitSent(1));
+        assertEquals(Arrays.asList("markAsRead [e1, e2]"), handler.getSent());
+    }
+
+    @Test
+    public void flushesMarkersAddedDuringScheduledFlush() throws InterruptedException {
+        queue.setFlushInterval(50);
+
+        handler.block();
+
+        queue.add("e1", MarkerQueue.Action.READ);
+
+        // the scheduled flush is sending e1 now
+        assertTrue(handler.awaitBlocked());
+
+        queue.add("e2", MarkerQueue.Action.READ);
+
+        handler.release();
+
+        assertTrue(handler.awaitSent(2));
+        assertEquals(Arrays.asList("markAsRead [e1]", "markAsRead [e2]"), handler.getSent());
+        assertEquals(0, queue.getNumberOfPendingMarkers());
+    }
+
+    @Test
+    public void flushesFullBatchAddedDuringScheduledFlush() throws InterruptedException {
+        queue.setFlushInterval(50);
+
+        handler.block();
+
+        queue.add("e1", MarkerQueue.Action.READ);
+
+        assertTrue(handler.awaitBlocked());
+
+        queue.setFlushInterval(60000);
+        queue.setMaxBatchSize(1);
+        queue.add("e2", MarkerQueue.Action.READ);
+
+        handler.release();
+
+        assertTrue(handler.awaitSent(2));
+        assertEquals(Arrays.asList("markAsRead [e1]", "markAsRead [e2]"), handler.getSent());
+    }
+
+    @Test
+    public void requeuesFailedMarkers() {
+        queue.setFlushInterval(60000);
+        queue.setMaxRetries(1);
+
+        handler.fail(true);
+
+        queue.add("e1", MarkerQueue.Action.READ);
+
+        assertFalse(queue.flush());
+        assertEquals(1, queue.getNumberOfPendingMarkers());
+        assertEquals(1, queue.getNumberOfFailedBatches());
+
+        // the second failure is one more than the allowed retries
+        assertFalse(queue.flush());
+        assertEquals(0, queue.getNumberOfPendingMarkers());
+        assertEquals(1, queue.getNumberOfDroppedMarkers());
+
+        handler.fail(false);
+
+        queue.add("e2", MarkerQueue.Action.READ);
+
+        assertTrue(queue.flush());
+        assertEquals(1, queue.getNumberOfSentMarkers());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsMarkersAfterClose() {
+        queue.close();
+
+        queue.add("e1", MarkerQueue.Action.READ);
+    }
+
+    /** Records the sent markers instead of sending them */
+    private static class FakeHandler extends JFeedly {
+
+        private final ArrayList<String> sent = new ArrayList<String>();
+        private volatile boolean failing = false;
+        private volatile CountDownLatch blocked = null;
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        FakeHandler() {
+            super("sandbox", "sandbox", "secret");
+        }
+
+        @Override
+        boolean sendEntryMarkers(String action, List<String> entryIds) {
+            CountDownLatch currentBlocked = blocked;
+
+            if(currentBlocked != null) {
+                blocked = null;
+                currentBlocked.countDown();
+
+                try {
+                    released.await();
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if(failing) {
+                return false;
+            }
+
+            synchronized(this) {
+                sent.add(action + " " + entryIds);
+                this.notifyAll();
+            }
+
+            return true;
+        }
+
+        /** Block the next request until release() is called */
+        void block() {
+            blocked = new CountDownLatch(1);
+        }
+
+        boolean awaitBlocked() throws InterruptedException {
+            CountDownLatch currentBlocked = blocked;
+
+            return currentBlocked == null || currentBlocked.await(5, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        void fail(boolean failing) {
+            this.failing = failing;
+        }
+
+        synchronized boolean awaitSent(int requests) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+
+            long remaining = end - System.currentTimeMillis();
+
+            while(sent.size() < requests && remaining > 0) {
+                this.wait(remaining);
+
+                remaining = end - System.currentTimeMillis();
+            }
+
+            return sent.size() >= requests;
+        }
+
+        synchronized List<String> getSent() {
+            return new ArrayList<String>(sent);
+        }
+    }
+}
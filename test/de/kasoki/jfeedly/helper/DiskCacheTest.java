@@ -0,0 +1,271 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class DiskCacheTest {
+
+    private static final long MAXIMUM_AGE = 60 * 60 * 1000;
+
+    private File directory;
+    private DiskCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jfeedly", "cache");
+        directory.delete();
+        directory.mkdirs();
+
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+
+    @Test
+    public void putAndGet() {
+        cache.put("a", "value a");
+        cache.put("b", "välue b");
+        cache.put("a", "new value a");
+
+        assertEquals("new value a", cache.get("a"));
+        assertEquals("välue b", cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals(2, cache.size());
+        assertTrue(cache.getWriteTime("a") > 0);
+        assertEquals(-1, cache.getWriteTime("c"));
+    }
+
+    @Test
+    public void keepsValuesAfterReopen() throws IOException {
+        cache.put("a", "value a");
+        cache.put("b", "value b");
+        cache.remove("b");
+
+        this.reopen();
+
+        assertEquals("value a", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getRecoveredRecords());
+        assertEquals(0, cache.getTruncatedBytes());
+    }
+
+    @Test
+    public void recoversRecordsWrittenAfterTheIndex() throws IOException {
+        cache.put("a", "value a");
+        cache.flush();
+
+        File indexFile = new File(directory, "test.idx");
+        byte[] oldIndex = readFile(indexFile);
+
+        cache.put("b", "value b");
+        cache.put("a", "value a2");
+        cache.remove("b");
+        cache.put("c", "value c");
+        cache.close();
+
+        // the process died before the index was written again
+        writeFile(indexFile, oldIndex);
+
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+
+        assertEquals(4, cache.getRecoveredRecords());
+        assertEquals("value a2", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("value c", cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void recoversWithoutAnIndex() throws IOException {
+        cache.put("a", "value a");
+        cache.put("b", "value b");
+        cache.close();
+
+        new File(directory, "test.idx").delete();
+
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+
+        assertEquals(2, cache.getRecoveredRecords());
+        assertEquals("value a", cache.get("a"));
+        assertEquals("value b", cache.get("b"));
+    }
+
+    @Test
+    public void truncatesTornRecord() throws IOException {
+        cache.put("a", "value a");
+        cache.close();
+
+        File segmentFile = new File(directory, "test.seg");
+        long length = segmentFile.length();
+
+        // record magic and the start of the length, the rest was never written
+        RandomAccessFile segment = new RandomAccessFile(segmentFile, "rw");
+        segment.seek(length);
+        segment.write(new byte[] { 0x4A, 0x46, 0x44, 0x52, 0, 0, 1 });
+        segment.close();
+
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+
+        assertEquals(7, cache.getTruncatedBytes());
+        assertEquals(length, segmentFile.length());
+        assertEquals("value a", cache.get("a"));
+
+        // new records go after the valid ones and survive the next reopen
+        cache.put("b", "value b");
+
+        this.reopen();
+
+        assertEquals(0, cache.getTruncatedBytes());
+        assertEquals("value a", cache.get("a"));
+        assertEquals("value b", cache.get("b"));
+    }
+
+    @Test
+    public void truncatesRecordWithBadChecksum() throws IOException {
+        cache.put("a", "value a");
+        cache.put("b", "value b");
+        cache.close();
+
+        File segmentFile = new File(directory, "test.seg");
+
+        new File(directory, "test.idx").delete();
+
+        RandomAccessFile segment = new RandomAccessFile(segmentFile, "rw");
+        segment.seek(segment.length() - 1);
+        int last = segment.read();
+        segment.seek(segment.length() - 1);
+        segment.write(last ^ 0xFF);
+        segment.close();
+
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+
+        assertTrue(cache.getTruncatedBytes() > 0);
+        assertEquals(1, cache.getRecoveredRecords());
+        assertEquals("value a", cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void startsEmptyWithUnknownSegment() throws IOException {
+        cache.put("a", "value a");
+        cache.close();
+
+        writeFile(new File(directory, "test.seg"), "not a cache segment".getBytes("UTF-8"));
+
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void compactionKeepsValues() throws IOException {
+        for(int i = 0; i < 100; i++) {
+            cache.put("key" + (i % 10), "value " + i);
+        }
+
+        long size = cache.getSegmentSize();
+
+        cache.compact();
+
+        assertEquals(1, cache.getCompactions());
+        assertTrue(cache.getSegmentSize() < size);
+
+        for(int i = 0; i < 10; i++) {
+            assertEquals("value " + (90 + i), cache.get("key" + i));
+        }
+
+        this.reopen();
+
+        assertEquals(10, cache.size());
+        assertEquals("value 95", cache.get("key5"));
+    }
+
+    @Test
+    public void treatsOldValuesAsMissing() throws IOException {
+        cache.put("a", "value a");
+
+        cache.setMaximumAge(-1);
+
+        assertNull(cache.get("a"));
+        assertFalse(cache.containsKey("a"));
+        assertEquals(-1, cache.getWriteTime("a"));
+        assertEquals(1, cache.removeExpired());
+        assertEquals(0, cache.size());
+    }
+
+    private void reopen() throws IOException {
+        cache.close();
+        cache = new DiskCache(directory, "test", MAXIMUM_AGE);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+
+        InputStream in = new FileInputStream(file);
+
+        try {
+            int offset = 0;
+
+            while(offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+
+                if(read < 0) {
+                    throw new IOException("unexpected end of file");
+                }
+
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes;
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
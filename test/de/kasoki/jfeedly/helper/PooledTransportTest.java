@@ -0,0 +1,268 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.helper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PooledTransportTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /** closes the connection instead of answering a request */
+    private static final String CLOSE = "close";
+
+    private ServerSocket serverSocket;
+    private List<String> responses;
+    private AtomicInteger requests;
+    private AtomicInteger connections;
+    private PooledTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        responses = Collections.synchronizedList(new ArrayList<String>());
+        requests = new AtomicInteger();
+        connections = new AtomicInteger();
+        transport = new PooledTransport(1, 60000);
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(true) {
+                        final Socket socket = serverSocket.accept();
+
+                        connections.incrementAndGet();
+
+                        Thread connection = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+
+                        connection.setDaemon(true);
+                        connection.start();
+                    }
+                } catch(IOException ex) {
+                    // server socket closed
+                }
+            }
+        });
+
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.shutdown();
+        serverSocket.close();
+    }
+
+    @Test
+    public void readsChunkedBodyWithExtensionsAndTrailers() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "5;name=value\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: yes\r\n\r\n");
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+
+        assertEquals("hello world", this.get("/chunked"));
+        // the trailers are consumed, so the next response is read from the same connection
+        assertEquals("ok", this.get("/next"));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void readsFixedLengthBodyWithoutReadingBehindIt() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 11\r\n\r\nhello fixed");
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\nsecond");
+
+        assertEquals("hello fixed", this.get("/fixed"));
+        assertEquals("second", this.get("/fixed"));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void readsEmptyBodyOfNoContentResponse() throws IOException {
+        responses.add("HTTP/1.1 204 No Content\r\n\r\n");
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+
+        assertEquals("", this.get("/empty"));
+        assertEquals("ok", this.get("/next"));
+    }
+
+    @Test
+    public void skipsInformationalResponses() throws IOException {
+        responses.add("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+
+        assertEquals("ok", this.get("/continue"));
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsOnTruncatedFixedLengthBody() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 10\r\nConnection: close\r\n\r\nhalf");
+
+        this.get("/truncated");
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsOnTruncatedChunkedBody() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\na\r\nhalf");
+
+        this.get("/truncated");
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnInvalidChunkSize() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nxyz\r\n");
+
+        this.get("/invalid");
+    }
+
+    @Test
+    public void retriesIdempotentRequestOnClosedConnection() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+        responses.add(CLOSE);
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nagain");
+
+        assertEquals("ok", this.get("/first"));
+        assertEquals("again", this.get("/second"));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void doesNotSendPostTwice() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+        responses.add(CLOSE);
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nagain");
+
+        assertEquals("ok", this.get("/first"));
+
+        try {
+            this.execute(new HTTPRequest("POST", this.getUrl("/v3/markers"), "{}".getBytes(ASCII)));
+            fail("the POST was sent again");
+        } catch(IOException ex) {
+            assertEquals(2, requests.get());
+        }
+    }
+
+    private String get(String path) throws IOException {
+        return this.execute(new HTTPRequest("GET", this.getUrl(path), null));
+    }
+
+    private String execute(HTTPRequest request) throws IOException {
+        HTTPResponse response = transport.execute(request);
+
+        try {
+            InputStream in = response.getBody();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[3];
+            int n;
+
+            // small reads cross the chunk boundaries
+            while((n = in.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+
+            return new String(body.toByteArray(), ASCII);
+        } finally {
+            response.close();
+        }
+    }
+
+    private String getUrl(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            while(this.readRequest(in)) {
+                requests.incrementAndGet();
+
+                String response = responses.isEmpty() ? CLOSE : responses.remove(0);
+
+                if(response.equals(CLOSE)) {
+                    break;
+                }
+
+                out.write(response.getBytes(ASCII));
+                out.flush();
+
+                if(response.contains("Connection: close")) {
+                    break;
+                }
+            }
+
+            socket.close();
+        } catch(IOException ex) {
+            // connection closed by the client
+        }
+    }
+
+    /** Read the head and body of one request, returns false if the connection was closed */
+    private boolean readRequest(InputStream in) throws IOException {
+        int contentLength = 0;
+        String line;
+        boolean first = true;
+
+        while((line = PooledTransport.readLine(in)) != null && !line.isEmpty()) {
+            first = false;
+
+            if(line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+
+        if(first && line == null) {
+            return false;
+        }
+
+        byte[] body = new byte[contentLength];
+        int read = 0;
+
+        while(read < contentLength) {
+            int n = in.read(body, read, contentLength - read);
+
+            if(n == -1) {
+                return false;
+            }
+
+            read += n;
+        }
+
+        return true;
+    }
+}
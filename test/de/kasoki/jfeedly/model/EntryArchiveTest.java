@@ -0,0 +1,238 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+public class EntryArchiveTest {
+
+    private File directory;
+    private File archiveFile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jfeedly", "archive");
+        directory.delete();
+        directory.mkdirs();
+
+        archiveFile = new File(directory, "entries.archive");
+    }
+
+    @After
+    public void tearDown() {
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+
+    @Test
+    public void roundTripKeepsAllFields() throws IOException {
+        ArrayList<Entry> entries = createEntries(50);
+
+        EntryArchive.write(entries, archiveFile);
+
+        EntryArchive archive = EntryArchive.open(archiveFile);
+
+        try {
+            assertEquals(50, archive.getNumberOfEntries());
+
+            for(int i = 0; i < entries.size(); i++) {
+                Entry expected = entries.get(i);
+                Entry actual = archive.get(i);
+
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getFingerprint(), actual.getFingerprint());
+                assertEquals(expected.getOriginId(), actual.getOriginId());
+                assertEquals(expected.getAuthor(), actual.getAuthor());
+                assertEquals(expected.getTitle(), actual.getTitle());
+                assertEquals(expected.getCrawledDate(), actual.getCrawledDate());
+                assertEquals(expected.getPublishedDate(), actual.getPublishedDate());
+                assertEquals(expected.isUnread(), actual.isUnread());
+                assertEquals(expected.getSummaryContent(), actual.getSummaryContent());
+                assertEquals(expected.getSummaryDirection(), actual.getSummaryDirection());
+                assertEquals(expected.getVisualUrl(), actual.getVisualUrl());
+                assertEquals(expected.getVisualWidth(), actual.getVisualWidth());
+                assertEquals(expected.getVisualContentType(), actual.getVisualContentType());
+                assertEquals(expected.getCategoryIds(), actual.getCategoryIds());
+
+                assertEquals(expected.getPublishedDate().getTime(), archive.getPublishedTime(i));
+                assertEquals(expected.isUnread(), archive.isUnread(i));
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void sharesDictionaryStrings() throws IOException {
+        EntryArchive.write(createEntries(10), archiveFile);
+
+        EntryArchive archive = EntryArchive.open(archiveFile);
+
+        try {
+            assertSame(archive.getOriginId(0), archive.getOriginId(2));
+            assertSame(archive.getCategoryIds(1).get(0), archive.getCategoryIds(3).get(0));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void returnsSummaryBytesWithoutDecoding() throws IOException {
+        EntryArchive.write(createEntries(3), archiveFile);
+
+        EntryArchive archive = EntryArchive.open(archiveFile);
+
+        try {
+            ByteBuffer summary = archive.getSummaryBytes(1);
+            byte[] bytes = new byte[summary.remaining()];
+            summary.get(bytes);
+
+            assertEquals("Summary 1 ä", new String(bytes, Charset.forName("UTF-8")));
+            assertNull(archive.getSummaryBytes(0));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void writesAnEmptyArchive() throws IOException {
+        EntryArchive.write(new ArrayList<Entry>(), archiveFile);
+
+        EntryArchive archive = EntryArchive.open(archiveFile);
+
+        try {
+            assertEquals(0, archive.getNumberOfEntries());
+            assertFalse(archive.iterator().hasNext());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void failedWriteKeepsTheOldArchive() throws IOException {
+        EntryArchive.write(createEntries(5), archiveFile);
+
+        long length = archiveFile.length();
+
+        try {
+            EntryArchive.write(new Iterable<Entry>() {
+                @Override
+                public Iterator<Entry> iterator() {
+                    final Iterator<Entry> entries = createEntries(3).iterator();
+
+                    return new Iterator<Entry>() {
+                        @Override
+                        public boolean hasNext() {
+                            return true;
+                        }
+
+                        @Override
+                        public Entry next() {
+                            if(!entries.hasNext()) {
+                                throw new IllegalStateException("failed");
+                            }
+
+                            return entries.next();
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            }, archiveFile);
+
+            fail("the write didn't fail");
+        } catch(IllegalStateException ex) {
+            // expected
+        }
+
+        assertEquals(length, archiveFile.length());
+        assertEquals(Arrays.asList(archiveFile.getName()), Arrays.asList(directory.list()));
+
+        EntryArchive archive = EntryArchive.open(archiveFile);
+
+        try {
+            assertEquals(5, archive.getNumberOfEntries());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsShortFile() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "rw");
+        file.write(new byte[10]);
+        file.close();
+
+        EntryArchive.open(archiveFile);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedArchive() throws IOException {
+        EntryArchive.write(createEntries(20), archiveFile);
+
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "rw");
+        file.setLength(file.length() - 10);
+        file.close();
+
+        EntryArchive.open(archiveFile);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "rw");
+        file.write(new byte[100]);
+        file.close();
+
+        EntryArchive.open(archiveFile);
+    }
+
+    private static ArrayList<Entry> createEntries(int number) {
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+
+        for(int i = 0; i < number; i++) {
+            String json = "{\"id\":\"e" + i + "\",\"fingerprint\":\"f" + i + "\",\"origin\":{\"streamId\":\"feed/" +
+                    (i % 2) + "\"},\"author\":\"Author " + i + "\",\"crawled\":" + (1000 + i) + ",\"published\":" +
+                    (2000 - i) + ",\"unread\":" + (i % 3 != 0) + ",\"title\":\"Title " + i + "\"," +
+                    "\"categories\":[{\"id\":\"user/1/category/c" + (i % 2) + "\"},{\"id\":\"user/1/category/all\"}]" +
+                    (i % 2 == 1 ? ",\"summary\":{\"content\":\"Summary " + i + " ä\",\"direction\":\"ltr\"}" : "") +
+                    (i % 4 == 0 ? ",\"visual\":{\"url\":\"http://example.com/" + i + ".png\",\"width\":" + i +
+                            ",\"height\":" + (2 * i) + ",\"contentType\":\"image/png\"}" : "") + "}";
+
+            entries.add(Entry.fromJSONString(json));
+        }
+
+        return entries;
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EntryTest {
+
+    private static final String JSON = "{\"id\":\"e1\",\"fingerprint\":\"f1\",\"origin\":{\"streamId\":\"feed/1\"}," +
+            "\"crawled\":1000,\"published\":2000,\"unread\":true,\"title\":\"Title\"," +
+            "\"categories\":[{\"id\":\"user/1/category/a\"}]}";
+
+    @Test
+    public void datesCantBeChanged() {
+        this.assertDatesCantBeChanged(Entry.fromJSONObject(new JSONObject(JSON)));
+        this.assertDatesCantBeChanged(Entry.fromJSONString(JSON));
+    }
+
+    @Test
+    public void categoriesCantBeChanged() {
+        this.assertCategoriesCantBeChanged(Entry.fromJSONObject(new JSONObject(JSON)));
+        this.assertCategoriesCantBeChanged(Entry.fromJSONString(JSON));
+    }
+
+    @Test
+    public void copiesDontShareState() {
+        Entry entry = Entry.fromJSONObject(new JSONObject(JSON));
+        Entry read = entry.withUnread(false);
+
+        read.getPublishedDate().setTime(0);
+        read.getCategoryIds().clear();
+
+        assertEquals(2000, entry.getPublishedDate().getTime());
+        assertEquals(Arrays.asList("user/1/category/a"), entry.getCategoryIds());
+        assertTrue(entry.isUnread());
+        assertFalse(read.isUnread());
+    }
+
+    @Test
+    public void snapshotsCantBeChangedThroughEntries() {
+        Entry older = Entry.fromJSONString(JSON.replace("\"e1\"", "\"e0\"").replace("2000", "1500"));
+        Entry newer = Entry.fromJSONObject(new JSONObject(JSON));
+
+        Entries snapshot = Entries.fromArrayList(new ArrayList<Entry>(Arrays.asList(older, newer)))
+                .snapshot();
+
+        snapshot.get(1).getPublishedDate().setTime(0);
+
+        assertEquals(2000, snapshot.getById("e1").getPublishedDate().getTime());
+    }
+
+    @Test
+    public void fromArrayListCopiesTheList() {
+        ArrayList<Entry> list = new ArrayList<Entry>();
+        list.add(Entry.fromJSONString(JSON));
+
+        Entries entries = Entries.fromArrayList(list);
+
+        list.clear();
+
+        assertEquals(1, entries.getNumberOfEntries());
+
+        entries.toArrayList().clear();
+
+        assertEquals(0, entries.getNumberOfEntries());
+        assertNull(entries.getById("e1"));
+    }
+
+    private void assertDatesCantBeChanged(Entry entry) {
+        entry.getCrawledDate().setTime(0);
+        entry.getPublishedDate().setTime(0);
+
+        assertEquals(1000, entry.getCrawledDate().getTime());
+        assertEquals(2000, entry.getPublishedDate().getTime());
+    }
+
+    private void assertCategoriesCantBeChanged(Entry entry) {
+        entry.getCategoryIds().add("user/1/category/b");
+
+        assertEquals(Arrays.asList("user/1/category/a"), entry.getCategoryIds());
+    }
+}
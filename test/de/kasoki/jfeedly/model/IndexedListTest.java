@@ -0,0 +1,103 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class IndexedListTest {
+
+    private static final Function<String, String> ID = new Function<String, String>() {
+        @Override
+        public String apply(String element) {
+            return element.substring(0, element.indexOf(':'));
+        }
+    };
+
+    @Test
+    public void findsElementsById() {
+        IndexedList<String> list = createList("a:1", "b:2", "a:3");
+
+        assertEquals("a:1", list.getById("a"));
+        assertEquals(1, list.indexOfId("b"));
+        assertEquals(-1, list.indexOfId("c"));
+        assertNull(list.getById("c"));
+        assertEquals(Arrays.asList("b:2", "a:1"), list.getByIds(Arrays.asList("b", "c", "a")));
+    }
+
+    @Test
+    public void keepsIndexAfterAdd() {
+        IndexedList<String> list = createList("a:1", "b:2");
+
+        assertEquals(1, list.indexOfId("b"));
+
+        list.add("c:3");
+        list.add("a:4");
+
+        assertEquals(2, list.indexOfId("c"));
+        assertEquals(0, list.indexOfId("a"));
+    }
+
+    @Test
+    public void updatesIndexAfterSet() {
+        IndexedList<String> list = createList("a:1", "b:2");
+
+        assertEquals("b:2", list.getById("b"));
+
+        list.set(1, "b:3");
+        assertEquals("b:3", list.getById("b"));
+
+        list.set(1, "c:4");
+        assertNull(list.getById("b"));
+        assertEquals("c:4", list.getById("c"));
+    }
+
+    @Test
+    public void updatesIndexAfterSubListSet() {
+        IndexedList<String> list = createList("a:1", "b:2", "c:3");
+
+        assertEquals("b:2", list.getById("b"));
+
+        List<String> subList = list.subList(1, 3);
+        subList.set(0, "d:4");
+
+        assertNull(list.getById("b"));
+        assertEquals(1, list.indexOfId("d"));
+        assertEquals("d:4", list.getById("d"));
+    }
+
+    @Test
+    public void updatesIndexAfterRemove() {
+        IndexedList<String> list = createList("a:1", "b:2", "c:3");
+
+        assertEquals(2, list.indexOfId("c"));
+
+        list.remove(0);
+
+        assertEquals(-1, list.indexOfId("a"));
+        assertEquals(1, list.indexOfId("c"));
+    }
+
+    private static IndexedList<String> createList(String... elements) {
+        return new IndexedList<String>(new ArrayList<String>(Arrays.asList(elements)), ID);
+    }
+}
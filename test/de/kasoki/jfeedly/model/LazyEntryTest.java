@@ -0,0 +1,125 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LazyEntryTest {
+
+    private static final String ENTRY = "{\"id\":\"e1\",\"fingerprint\":\"f1\",\"origin\":{\"streamId\":\"feed/x1\"," +
+            "\"title\":\"Feed {1}\"},\"author\":\"A \\\"quoted\\\" author\",\"crawled\":100001,\"published\":199999," +
+            "\"unread\":true,\"categories\":[{\"id\":\"user/1/category/c1\"},{\"id\":\"user/1/category/c2\"}]," +
+            "\"title\":\"T\\u00e4st \\/ \\\\ ]}\",\"summary\":{\"content\":\"sum\\nmary\",\"direction\":\"ltr\"}," +
+            "\"visual\":{\"url\":\"http://example.com/a.png\",\"width\":10,\"height\":20,\"contentType\":\"image/png\"}," +
+            "\"keywords\":[\"a\",[1,2,{\"b\":null}]],\"engagement\":-1.5e3}";
+
+    @Test
+    public void picksIdDatesAndReadStateWithoutDecoding() {
+        LazyEntry entry = LazyEntry.parse(ENTRY, null);
+
+        assertEquals("e1", entry.getId());
+        assertEquals(100001, entry.getCrawledDate().getTime());
+        assertEquals(199999, entry.getPublishedDate().getTime());
+        assertTrue(entry.isUnread());
+        assertFalse(entry.isDecoded());
+    }
+
+    @Test
+    public void decodesTheSameFieldsAsAnEagerEntry() {
+        Entry lazy = LazyEntry.parse(ENTRY, null);
+        Entry eager = Entry.fromJSONObject(new JSONObject(ENTRY));
+
+        assertEquals(eager.getFingerprint(), lazy.getFingerprint());
+        assertEquals(eager.getOriginId(), lazy.getOriginId());
+        assertEquals(eager.getAuthor(), lazy.getAuthor());
+        assertEquals(eager.getTitle(), lazy.getTitle());
+        assertEquals(eager.getSummaryContent(), lazy.getSummaryContent());
+        assertEquals(eager.getSummaryDirection(), lazy.getSummaryDirection());
+        assertEquals(eager.getVisualUrl(), lazy.getVisualUrl());
+        assertEquals(eager.getVisualWidth(), lazy.getVisualWidth());
+        assertEquals(eager.getVisualHeight(), lazy.getVisualHeight());
+        assertEquals(eager.getVisualContentType(), lazy.getVisualContentType());
+        assertEquals(eager.getCategoryIds(), lazy.getCategoryIds());
+        assertEquals("Täst / \\ ]}", lazy.getTitle());
+    }
+
+    @Test
+    public void keepsTheJSONText() {
+        Entry entry = LazyEntry.parse(ENTRY, null);
+
+        assertEquals(ENTRY, entry.toJSONString());
+        assertEquals(entry.getTitle(), Entry.fromJSONString(entry.toJSONString()).getTitle());
+    }
+
+    @Test
+    public void changesTheReadStateWithoutDecoding() {
+        LazyEntry entry = LazyEntry.parse(ENTRY, null);
+
+        assertSame(entry, entry.withUnread(true));
+
+        Entry read = entry.withUnread(false);
+
+        assertFalse(read.isUnread());
+        assertEquals("e1", read.getId());
+        assertEquals(entry.getTitle(), read.getTitle());
+    }
+
+    @Test
+    public void sharesIdsThroughTheDictionary() {
+        IdDictionary dictionary = new IdDictionary();
+
+        Entry first = LazyEntry.parse(ENTRY, dictionary);
+        Entry second = LazyEntry.parse(ENTRY.replace("\"e1\"", "\"e2\""), dictionary);
+
+        assertSame(first.getOriginId(), second.getOriginId());
+        assertSame(first.getCategoryIds().get(0), second.getCategoryIds().get(0));
+    }
+
+    @Test
+    public void readsEntriesFromAnArray() {
+        String json = "[" + ENTRY + ", " + ENTRY.replace("\"e1\"", "\"e2\"").replace("\"unread\":true",
+                "\"unread\":false") + "]";
+
+        Entries entries = Entries.fromReader(new StringReader(json), true);
+
+        assertEquals(2, entries.getNumberOfEntries());
+        assertEquals(Arrays.asList("e1", "e2"), Arrays.asList(entries.get(0).getId(), entries.get(1).getId()));
+        assertFalse(entries.get(1).isUnread());
+        assertEquals("feed/x1", entries.get(1).getOriginId());
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsEntryWithoutId() {
+        LazyEntry.parse("{\"crawled\":1,\"published\":2,\"unread\":true}", null);
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsTruncatedText() {
+        LazyEntry.parse(ENTRY.substring(0, ENTRY.length() / 2), null);
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsNoObject() {
+        LazyEntry.parse("[1, 2]", null);
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright 2013 Christopher "Kasoki" Kaster <http://kasoki.de>
+//
+// This project is hosted at Github <https://github.com/Kasoki/jfeedly>
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// <http://www.apache.org/licenses/LICENSE-2.0>
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package de.kasoki.jfeedly.model;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UnreadCountsTest {
+
+    private static final String JSON = "{\"unreadcounts\":[{\"id\":\"feed/1\",\"count\":3}," +
+            "{\"id\":\"user/1/category/a\",\"count\":5}]}";
+
+    @Test
+    public void returnsCounts() {
+        UnreadCounts counts = UnreadCounts.fromJSONObject(new JSONObject(JSON));
+
+        assertEquals(3, counts.getCount("feed/1"));
+        assertEquals(5, counts.getCount("user/1/category/a"));
+        assertEquals(-1, counts.getCount("feed/2"));
+        assertTrue(counts.contains("feed/1"));
+        assertEquals(2, counts.getIds().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void idsCantBeRemoved() {
+        UnreadCounts counts = UnreadCounts.fromJSONObject(new JSONObject(JSON));
+
+        counts.getIds().remove("feed/1");
+    }
+}